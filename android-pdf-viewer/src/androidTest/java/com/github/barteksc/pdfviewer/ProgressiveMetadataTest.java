@@ -0,0 +1,88 @@
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+import com.vivlio.android.pdfium.ArrivingSource;
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+import com.vivlio.android.pdfium.TestDocuments;
+import com.vivlio.android.pdfium.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores the layout metadata of a document loaded from a {@link com.vivlio.android.pdfium.ProgressiveSource}
+ * once the whole document arrived.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressiveMetadataTest {
+
+    private static final int PAGE_COUNT = 4;
+
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * Longest wait for the entry, written on the metadata writer thread
+     */
+    private static final long WRITE_TIMEOUT_MS = 5000;
+
+    @Test
+    public void completedProgressiveLoadWritesMetadata() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PdfiumCore pdfiumCore = new PdfiumCore(context);
+        // another document for each run, the entries of previous runs are not found
+        String fileId = UUID.randomUUID().toString().replace("-", "");
+        byte[] content = TestDocuments.createLinearizedDocument(PAGE_COUNT, fileId);
+        int firstPageEnd = TestDocuments.linearizedHeaderValue(content, "E");
+        ArrivingSource source = new ArrivingSource(content, CHUNK_SIZE, (firstPageEnd + 1024) / CHUNK_SIZE + 1);
+        PdfDocument document = pdfiumCore.newDocument(source, null, new CancellationSignal());
+        MetadataCache metadataCache = MetadataCache.getInstance(context);
+        PdfFile pdfFile = new PdfFile(pdfiumCore, document, FitPolicy.WIDTH, new Size(1080, 1920), null,
+                true, 0, false, false, 0, 0, true, metadataCache);
+        try {
+            assertTrue(pdfFile.isProgressive());
+            String fingerprint = pdfFile.getFingerprint();
+            assertNotNull(fingerprint);
+
+            // what the PageAvailabilityTracker does once the rest of the document arrived
+            source.arriveAll();
+            int[] size = new int[2];
+            for (int page = 1; page < PAGE_COUNT; page++) {
+                assertTrue(pdfFile.checkPageAvailable(page));
+                assertTrue(pdfFile.readPageSizes(page, 1, size));
+                pdfFile.applyMeasuredPages(page, 1, size);
+            }
+            assertTrue(pdfFile.isLayoutComplete());
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                PDFView pdfView = new PDFView(context, null);
+                pdfView.setMetadataCacheEnabled(true);
+                pdfView.pdfFile = pdfFile;
+                pdfView.onDocumentComplete(pdfFile);
+            });
+
+            long deadline = SystemClock.uptimeMillis() + WRITE_TIMEOUT_MS;
+            MetadataCache.Metadata metadata;
+            while ((metadata = metadataCache.get(fingerprint, pdfiumCore.getDpi(), PAGE_COUNT)) == null
+                    && SystemClock.uptimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertNotNull(metadata);
+            assertEquals(PAGE_COUNT, metadata.getPageCount());
+        } finally {
+            pdfFile.dispose();
+        }
+    }
+}
@@ -32,6 +32,9 @@ import androidx.annotation.NonNull;
  * It uses the ValueAnimator appeared in API 11 to start
  * an animation, and call moveTo() on the PDFView as a result
  * of each animation update.
+ * <p>
+ * Scroll animations and flings know where they will end, that viewport is loaded
+ * first while they run, see {@link PDFView#getPrefetchTarget()}.
  */
 class AnimationManager {
 
@@ -58,6 +61,7 @@ class AnimationManager {
         animation.addUpdateListener(xAnimation);
         animation.addListener(xAnimation);
         animation.setDuration(400);
+        pdfView.setPrefetchTarget(xTo, pdfView.getCurrentYOffset());
         animation.start();
     }
 
@@ -69,6 +73,7 @@ class AnimationManager {
         animation.addUpdateListener(yAnimation);
         animation.addListener(yAnimation);
         animation.setDuration(400);
+        pdfView.setPrefetchTarget(pdfView.getCurrentXOffset(), yTo);
         animation.start();
     }
 
@@ -87,6 +92,7 @@ class AnimationManager {
         stopAll();
         flinging = true;
         scroller.fling(startX, startY, velocityX, velocityY, minX, maxX, minY, maxY);
+        pdfView.setPrefetchTarget(scroller.getFinalX(), scroller.getFinalY());
     }
 
     public void startPageFlingAnimation(float targetOffset) {
@@ -104,6 +110,7 @@ class AnimationManager {
             pdfView.loadPageByOffset();
         } else if (flinging) { // fling finished
             flinging = false;
+            pdfView.clearPrefetchTarget();
             pdfView.loadPages();
             hideHandle();
             pdfView.performPageSnap();
@@ -119,6 +126,9 @@ class AnimationManager {
     }
 
     public void stopFling() {
+        if (flinging) {
+            pdfView.clearPrefetchTarget();
+        }
         flinging = false;
         scroller.forceFinished(true);
     }
@@ -138,6 +148,7 @@ class AnimationManager {
 
         @Override
         public void onAnimationCancel(Animator animation) {
+            pdfView.clearPrefetchTarget();
             pdfView.loadPages();
             pageFlinging = false;
             hideHandle();
@@ -145,6 +156,7 @@ class AnimationManager {
 
         @Override
         public void onAnimationEnd(Animator animation) {
+            pdfView.clearPrefetchTarget();
             pdfView.loadPages();
             pageFlinging = false;
             hideHandle();
@@ -162,6 +174,7 @@ class AnimationManager {
 
         @Override
         public void onAnimationCancel(Animator animation) {
+            pdfView.clearPrefetchTarget();
             pdfView.loadPages();
             pageFlinging = false;
             hideHandle();
@@ -169,6 +182,7 @@ class AnimationManager {
 
         @Override
         public void onAnimationEnd(Animator animation) {
+            pdfView.clearPrefetchTarget();
             pdfView.loadPages();
             pageFlinging = false;
             hideHandle();
@@ -0,0 +1,121 @@
+package com.github.barteksc.pdfviewer;
+
+import android.graphics.Bitmap;
+
+import com.github.barteksc.pdfviewer.model.BitmapPoolStats;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of bitmaps evicted from {@link CacheManager}, reused by {@link RenderingHandler}
+ * for the next parts and thumbnails of the same size and config.
+ * <p>
+ * Reused bitmaps are not erased: pdfium fills the whole canvas (white page background,
+ * gray outside of the page) before drawing, so every pixel of a part is rewritten.
+ * <p>
+ * When the pooled bitmaps exceed the byte cap, bitmaps of the least recently
+ * used size are recycled first.
+ */
+class BitmapPool {
+
+    /**
+     * Buckets by size and config, in access order
+     */
+    private final LinkedHashMap<Long, ArrayDeque<Bitmap>> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxBytes;
+
+    private long pooledBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a bitmap of the given size and config, reusing a pooled one if possible.
+     * Its content is undefined.
+     *
+     * @throws IllegalArgumentException if a new bitmap cannot be created, see {@link Bitmap#createBitmap(int, int, Bitmap.Config)}
+     */
+    Bitmap acquire(int width, int height, Bitmap.Config config) {
+        synchronized (this) {
+            ArrayDeque<Bitmap> bucket = buckets.get(key(width, height, config));
+            if (bucket != null && !bucket.isEmpty()) {
+                Bitmap bitmap = bucket.pop();
+                pooledBytes -= bitmap.getAllocationByteCount();
+                hits++;
+                return bitmap;
+            }
+            misses++;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Give back a bitmap which is no longer drawn, it is recycled if it cannot be pooled
+     */
+    void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            Long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                buckets.put(key, bucket);
+            }
+            bucket.push(bitmap);
+            pooledBytes += size;
+            trimToSize(maxBytes);
+        }
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Recycle all pooled bitmaps
+     */
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    synchronized BitmapPoolStats getStats() {
+        return new BitmapPoolStats(hits, misses, evictions, pooledBytes, maxBytes);
+    }
+
+    private void trimToSize(long size) {
+        Iterator<Map.Entry<Long, ArrayDeque<Bitmap>>> iterator = buckets.entrySet().iterator();
+        while (pooledBytes > size && iterator.hasNext()) {
+            ArrayDeque<Bitmap> bucket = iterator.next().getValue();
+            while (pooledBytes > size && !bucket.isEmpty()) {
+                Bitmap bitmap = bucket.removeLast();
+                pooledBytes -= bitmap.getAllocationByteCount();
+                bitmap.recycle();
+                evictions++;
+            }
+            if (bucket.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Long key(int width, int height, Bitmap.Config config) {
+        return ((long) config.ordinal() << 48) | ((long) width << 24) | height;
+    }
+}
@@ -15,26 +15,42 @@
  */
 package com.github.barteksc.pdfviewer;
 
-import android.graphics.RectF;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.github.barteksc.pdfviewer.util.Constants;
 
 import com.github.barteksc.pdfviewer.model.PagePart;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.TreeSet;
 
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.CACHE_SIZE;
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.THUMBNAILS_CACHE_SIZE;
 
-import androidx.annotation.Nullable;
-
 class CacheManager {
 
-    private final PriorityQueue<PagePart> passiveCache;
+    /**
+     * Parts of the previous loads, evicted first, by cache order
+     */
+    private final TreeSet<PagePart> passiveCache;
+
+    /**
+     * Parts requested by the current load, by cache order
+     */
+    private final TreeSet<PagePart> activeCache;
 
-    private final PriorityQueue<PagePart> activeCache;
+    /**
+     * Every part of the passive and active caches, by page and grid cell
+     */
+    private final Map<PagePart, PagePart> partsIndex;
 
     private final List<PagePart> thumbnails;
 
@@ -42,19 +58,89 @@ class CacheManager {
 
     private final PagePartComparator orderComparator = new PagePartComparator();
 
-    public CacheManager() {
-        activeCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
-        passiveCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
+    private final LevelDistanceComparator levelComparator = new LevelDistanceComparator();
+
+    /**
+     * Evicted bitmaps go back to this pool
+     */
+    private final BitmapPool bitmapPool;
+
+    /**
+     * Maximum size in bytes of the bitmaps held by active and passive caches
+     */
+    private long maxBytes;
+
+    /**
+     * Size in bytes of the bitmaps held by active and passive caches
+     */
+    private long cachedBytes;
+
+    public CacheManager(BitmapPool bitmapPool, long maxBytes) {
+        this.bitmapPool = bitmapPool;
+        this.maxBytes = maxBytes;
+        activeCache = new TreeSet<>(orderComparator);
+        passiveCache = new TreeSet<>(orderComparator);
+        partsIndex = new HashMap<>(CACHE_SIZE);
         thumbnails = new ArrayList<>();
     }
 
+    /**
+     * Default cache size, a fraction of the memory class of the application
+     */
+    static long getDefaultMaxBytes(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null) {
+            return Constants.Cache.MIN_CACHE_BYTES;
+        }
+        int divider = activityManager.isLowRamDevice() ? Constants.Cache.LOW_RAM_MEMORY_CLASS_DIVIDER : Constants.Cache.MEMORY_CLASS_DIVIDER;
+        long bytes = (long) activityManager.getMemoryClass() * 1024 * 1024 / divider;
+        return Math.max(bytes, Constants.Cache.MIN_CACHE_BYTES);
+    }
+
     public void cachePart(PagePart part) {
         synchronized (passiveActiveLock) {
-            // If cache too big, remove and recycle
-            makeAFreeSpace();
+            if (partsIndex.containsKey(part)) {
+                bitmapPool.release(part.getRenderedBitmap());
+                return;
+            }
+            long size = part.getRenderedBitmap().getAllocationByteCount();
+
+            // If cache too big, remove and release
+            makeAFreeSpace(size);
 
             // Then add part
-            activeCache.offer(part);
+            activeCache.add(part);
+            partsIndex.put(part, part);
+            cachedBytes += size;
+        }
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        synchronized (passiveActiveLock) {
+            this.maxBytes = maxBytes;
+            makeAFreeSpace(0);
+        }
+    }
+
+    public long getMaxBytes() {
+        synchronized (passiveActiveLock) {
+            return maxBytes;
+        }
+    }
+
+    public long getCachedBytes() {
+        synchronized (passiveActiveLock) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Number of full-size parts fitting in the cache budget
+     */
+    public int getMaxParts(boolean bestQuality) {
+        long partBytes = (long) (Constants.PART_SIZE * Constants.PART_SIZE) * (bestQuality ? 4 : 2);
+        synchronized (passiveActiveLock) {
+            return (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / partBytes));
         }
     }
 
@@ -65,26 +151,36 @@ class CacheManager {
         }
     }
 
-    private void makeAFreeSpace() {
+    /**
+     * Evict parts until bytesNeeded more bytes fit in the budget,
+     * passive parts first, then active ones, both by cache order
+     */
+    private void makeAFreeSpace(long bytesNeeded) {
         synchronized (passiveActiveLock) {
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
+            while (cachedBytes + bytesNeeded > maxBytes &&
                     !passiveCache.isEmpty()) {
-                PagePart part = passiveCache.poll();
-                part.getRenderedBitmap().recycle();
+                evict(passiveCache.pollFirst());
             }
 
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
+            while (cachedBytes + bytesNeeded > maxBytes &&
                     !activeCache.isEmpty()) {
-                activeCache.poll().getRenderedBitmap().recycle();
+                evict(activeCache.pollFirst());
             }
         }
     }
 
+    private void evict(PagePart part) {
+        partsIndex.remove(part);
+        Bitmap bitmap = part.getRenderedBitmap();
+        cachedBytes -= bitmap.getAllocationByteCount();
+        bitmapPool.release(bitmap);
+    }
+
     public void cacheThumbnail(PagePart part) {
         synchronized (thumbnails) {
             // If cache too big, remove and recycle
             while (thumbnails.size() >= THUMBNAILS_CACHE_SIZE) {
-                thumbnails.remove(0).getRenderedBitmap().recycle();
+                bitmapPool.release(thumbnails.remove(0).getRenderedBitmap());
             }
 
             // Then add thumbnail
@@ -93,27 +189,34 @@ class CacheManager {
 
     }
 
-    public boolean upPartIfContained(int page, RectF pageRelativeBounds, int toOrder) {
-        PagePart fakePart = new PagePart(page, null, pageRelativeBounds, false, 0);
+    /**
+     * If the part of the given page and grid cell is cached, make it part
+     * of the active set with the given cache order
+     *
+     * @param motion true to look for the motion part of the cell, see {@link PagePart#isMotion()}
+     * @return true if the part is cached
+     */
+    public boolean upPartIfContained(int page, int row, int col, int gridRows, int gridCols, boolean motion, int toOrder) {
+        PagePart fakePart = new PagePart(page, null, null, false, 0, row, col, gridRows, gridCols, 0, motion);
 
-        PagePart found;
         synchronized (passiveActiveLock) {
-            if ((found = find(passiveCache, fakePart)) != null) {
-                passiveCache.remove(found);
+            PagePart found = partsIndex.get(fakePart);
+            if (found == null) {
+                return false;
+            }
+            if (passiveCache.remove(found)) {
                 found.setCacheOrder(toOrder);
-                activeCache.offer(found);
-                return true;
+                activeCache.add(found);
             }
-
-            return find(activeCache, fakePart) != null;
+            return true;
         }
     }
 
     /**
-     * Return true if already contains the described PagePart
+     * Return true if already contains the thumbnail of the given page
      */
-    public boolean containsThumbnail(int page, RectF pageRelativeBounds) {
-        PagePart fakePart = new PagePart(page, null, pageRelativeBounds, true, 0);
+    public boolean containsThumbnail(int page) {
+        PagePart fakePart = new PagePart(page, null, null, true, 0, 0, 0, 1, 1, 0, false);
         synchronized (thumbnails) {
             for (PagePart part : thumbnails) {
                 if (part.equals(fakePart)) {
@@ -125,31 +228,28 @@ class CacheManager {
     }
 
     /**
-     * Add part if it doesn't exist, recycle bitmap otherwise
+     * Add part if it doesn't exist, release bitmap to the pool otherwise
      */
     private void addWithoutDuplicates(Collection<PagePart> collection, PagePart newPart) {
         for (PagePart part : collection) {
             if (part.equals(newPart)) {
-                newPart.getRenderedBitmap().recycle();
+                bitmapPool.release(newPart.getRenderedBitmap());
                 return;
             }
         }
         collection.add(newPart);
     }
 
-    @Nullable
-    private static PagePart find(PriorityQueue<PagePart> vector, PagePart fakePart) {
-        for (PagePart part : vector) {
-            if (part.equals(fakePart)) {
-                return part;
-            }
-        }
-        return null;
-    }
-
-    public List<PagePart> getPageParts() {
+    /**
+     * Parts in drawing order: parts of the previous loads first, the farthest from the
+     * given zoom level first, so that the closest cached level covers the other ones
+     * while the parts of the current load, drawn last, are rendered
+     */
+    public List<PagePart> getPageParts(int level) {
         synchronized (passiveActiveLock) {
             List<PagePart> parts = new ArrayList<>(passiveCache);
+            levelComparator.level = level;
+            Collections.sort(parts, levelComparator);
             parts.addAll(activeCache);
             return parts;
         }
@@ -171,6 +271,8 @@ class CacheManager {
                 part.getRenderedBitmap().recycle();
             }
             activeCache.clear();
+            partsIndex.clear();
+            cachedBytes = 0;
         }
         synchronized (thumbnails) {
             for (PagePart part : thumbnails) {
@@ -178,15 +280,49 @@ class CacheManager {
             }
             thumbnails.clear();
         }
+        bitmapPool.clear();
     }
 
+    /**
+     * Orders parts by cache order, ties are broken by page and grid cell
+     * so that distinct parts are never considered equal by the sets
+     */
     class PagePartComparator implements Comparator<PagePart> {
         @Override
         public int compare(PagePart part1, PagePart part2) {
-            if (part1.getCacheOrder() == part2.getCacheOrder()) {
-                return 0;
+            int result = Integer.compare(part1.getCacheOrder(), part2.getCacheOrder());
+            if (result == 0) {
+                result = Integer.compare(part1.getPage(), part2.getPage());
+            }
+            if (result == 0) {
+                result = Integer.compare(part1.getGridRows(), part2.getGridRows());
+            }
+            if (result == 0) {
+                result = Integer.compare(part1.getGridCols(), part2.getGridCols());
+            }
+            if (result == 0) {
+                result = Integer.compare(part1.getRow(), part2.getRow());
+            }
+            if (result == 0) {
+                result = Integer.compare(part1.getCol(), part2.getCol());
+            }
+            if (result == 0) {
+                result = Boolean.compare(part1.isMotion(), part2.isMotion());
             }
-            return part1.getCacheOrder() > part2.getCacheOrder() ? 1 : -1;
+            return result;
+        }
+    }
+
+    /**
+     * Orders parts by decreasing distance to a zoom level
+     */
+    static class LevelDistanceComparator implements Comparator<PagePart> {
+
+        int level;
+
+        @Override
+        public int compare(PagePart part1, PagePart part2) {
+            return Integer.compare(Math.abs(part2.getLevel() - level), Math.abs(part1.getLevel() - level));
         }
     }
 
@@ -0,0 +1,307 @@
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Rendered parts kept on disk across document loads, consulted by {@link RenderingHandler}
+ * before rendering a part with pdfium.
+ * <p>
+ * Tiles are stored as raw pixels compressed with {@link Deflater#BEST_SPEED}, which decodes
+ * much faster than PNG or WEBP, in files named after the document fingerprint, the page,
+ * the grid the page was split in at the zoom it was rendered and the cell in the grid.
+ * Writes are done on a background thread, the least recently used tiles are deleted
+ * when the cache exceeds its size in bytes.
+ */
+class DiskTileCache {
+
+    private static final String TAG = DiskTileCache.class.getSimpleName();
+
+    private static final String DIRECTORY = "pdfviewer-tiles";
+
+    private static final String EXTENSION = ".tile";
+
+    private static final int MAGIC = 0x50445431; // PDT1
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Tiles rendered while this many writes are pending are not stored
+     */
+    private static final int MAX_PENDING_WRITES = 16;
+
+    private static DiskTileCache instance;
+
+    private final File directory;
+
+    /**
+     * File name to file size, in access order, loaded on first use
+     */
+    private LinkedHashMap<String, Long> index;
+
+    private long maxBytes;
+
+    private long cachedBytes;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PDF tile writer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private DiskTileCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache is shared by every {@link PDFView} of the process
+     */
+    static synchronized DiskTileCache getInstance(Context context, long maxBytes) {
+        if (instance == null) {
+            instance = new DiskTileCache(new File(context.getCacheDir(), DIRECTORY), maxBytes);
+        } else {
+            instance.setMaxBytes(maxBytes);
+        }
+        return instance;
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (index != null) {
+            trimToSize();
+        }
+    }
+
+    /**
+     * Identity of a document, stable across loads of the same file
+     *
+     * @return null if the document has no file identifier and was not loaded from a file
+     */
+    @Nullable
+    static String fingerprint(PdfiumCore pdfiumCore, PdfDocument pdfDocument, int pageCount) {
+        byte[] permanentId = pdfiumCore.getFileIdentifier(pdfDocument, PdfiumCore.FILE_ID_PERMANENT);
+        byte[] changingId = pdfiumCore.getFileIdentifier(pdfDocument, PdfiumCore.FILE_ID_CHANGING);
+        if (permanentId == null && pdfDocument.getFileSize() < 0) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteBuffer attributes = ByteBuffer.allocate(36);
+            attributes.putLong(pdfDocument.getFileSize());
+            attributes.putLong(pdfDocument.getFileModifiedTime());
+            attributes.putLong(pdfDocument.getFileOffset());
+            attributes.putInt(pageCount);
+            attributes.putInt(permanentId != null ? permanentId.length : -1);
+            attributes.putInt(changingId != null ? changingId.length : -1);
+            digest.update(attributes.array());
+            if (permanentId != null) {
+                digest.update(permanentId);
+            }
+            if (changingId != null) {
+                digest.update(changingId);
+            }
+            byte[] hash = digest.digest();
+            char[] hex = new char[2 * hash.length];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    static String tileName(String fingerprint, int documentPage, boolean thumbnail,
+                           int row, int col, int gridRows, int gridCols,
+                           Bitmap.Config config, boolean annotations, int width, int height) {
+        return fingerprint + '_' + documentPage + (thumbnail ? "_t" : "_p")
+                + '_' + gridRows + 'x' + gridCols + '_' + row + '_' + col
+                + '_' + width + 'x' + height
+                + (config == Bitmap.Config.RGB_565 ? "_565" : "_8888")
+                + (annotations ? "_a" : "") + EXTENSION;
+    }
+
+    /**
+     * Read a tile into the given bitmap, which must have the size and config of the stored tile
+     *
+     * @return true if the tile was found, the bitmap content is undefined otherwise
+     */
+    boolean get(String tileName, Bitmap bitmap) {
+        File file = new File(directory, tileName);
+        synchronized (this) {
+            ensureIndex();
+            if (index.get(tileName) == null) {
+                return false;
+            }
+        }
+        int length = bitmap.getHeight() * bitmap.getRowBytes();
+        Inflater inflater = new Inflater();
+        try (DataInputStream input = new DataInputStream(new InflaterInputStream(new FileInputStream(file), inflater, 16 * 1024))) {
+            if (input.readInt() != MAGIC
+                    || input.readInt() != bitmap.getWidth()
+                    || input.readInt() != bitmap.getHeight()
+                    || input.readInt() != bitmap.getConfig().ordinal()
+                    || input.readInt() != length) {
+                remove(tileName);
+                return false;
+            }
+            byte[] pixels = new byte[length];
+            input.readFully(pixels);
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read tile " + tileName, e);
+            remove(tileName);
+            return false;
+        } finally {
+            inflater.end();
+        }
+        // keep the access order across processes
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Store a copy of the bitmap, written in the background
+     */
+    void put(String tileName, Bitmap bitmap) {
+        if (pendingWrites.get() >= MAX_PENDING_WRITES) {
+            return;
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int config = bitmap.getConfig().ordinal();
+        final byte[] pixels = new byte[bitmap.getHeight() * bitmap.getRowBytes()];
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(pixels));
+
+        pendingWrites.incrementAndGet();
+        writer.execute(() -> {
+            try {
+                write(tileName, width, height, config, pixels);
+            } finally {
+                pendingWrites.decrementAndGet();
+            }
+        });
+    }
+
+    private void write(String tileName, int width, int height, int config, byte[] pixels) {
+        synchronized (this) {
+            ensureIndex();
+            if (index.containsKey(tileName)) {
+                return;
+            }
+        }
+        File file = new File(directory, tileName);
+        File tmpFile = new File(directory, tileName + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(new FileOutputStream(tmpFile), deflater, 16 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(width);
+                output.writeInt(height);
+                output.writeInt(config);
+                output.writeInt(pixels.length);
+                output.write(pixels);
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write tile " + tileName, e);
+            tmpFile.delete();
+            return;
+        } finally {
+            deflater.end();
+        }
+        synchronized (this) {
+            index.put(tileName, file.length());
+            cachedBytes += file.length();
+            trimToSize();
+        }
+    }
+
+    private synchronized void remove(String tileName) {
+        Long size = index.remove(tileName);
+        if (size != null) {
+            cachedBytes -= size;
+        }
+        new File(directory, tileName).delete();
+    }
+
+    /**
+     * Load the existing tiles, least recently used first
+     */
+    private void ensureIndex() {
+        if (index != null) {
+            return;
+        }
+        index = new LinkedHashMap<>(64, 0.75f, true);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Long.compare(lastModified[i1], lastModified[i2]));
+        for (Integer i : order) {
+            File file = files[i];
+            if (!file.getName().endsWith(EXTENSION)) {
+                // interrupted write
+                file.delete();
+                continue;
+            }
+            long size = file.length();
+            index.put(file.getName(), size);
+            cachedBytes += size;
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            cachedBytes -= entry.getValue();
+            new File(directory, entry.getKey()).delete();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.github.barteksc.pdfviewer.exception.PageRenderingException;
+import com.github.barteksc.pdfviewer.model.LoadStage;
+import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.source.ProgressiveDocumentSource;
+import com.github.barteksc.pdfviewer.util.Constants;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+import com.vivlio.android.pdfium.IoMode;
+import com.vivlio.android.pdfium.IoStats;
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+import com.vivlio.android.pdfium.ProgressiveSource;
+import com.vivlio.android.pdfium.util.Size;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Loads a document in stages, see {@link LoadStage}: the document is opened, the first page
+ * and the default page are measured, then the thumbnail of the default page is rendered
+ * while the remaining pages are measured. With a lazy layout, or when the page sizes are
+ * stored by the {@link MetadataCache}, the remaining pages are measured after the document
+ * is displayed by the {@link PageSizeResolver}. The pages of a document still arriving from a
+ * {@link ProgressiveDocumentSource} are measured as they arrive by the {@link PageAvailabilityTracker},
+ * the document is displayed once its first page and its default page arrived.
+ * <p>
+ * A cancelled load stops at the end of the current stage and releases what it opened,
+ * the document is closed and the thumbnail bitmap returned to the pool.
+ * <p>
+ * The configuration of the view is read when the loader is created, the view itself is only
+ * referenced weakly: a load waiting for a document still arriving does not keep it alive,
+ * and stops once it is gone.
+ */
+class DocumentLoader implements Runnable {
+
+    private static final String TAG = DocumentLoader.class.getSimpleName();
+
+    /**
+     * Loads are not queued behind a cancelled one still in a native call
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "PDF loader");
+        thread.setPriority(Thread.NORM_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Longest wait for the data of a progressive document before checking the cancellation
+     */
+    private static final long DATA_WAIT_MS = 100;
+
+    private final WeakReference<PDFView> pdfViewRef;
+    private final PdfiumCore pdfiumCore;
+    private final DocumentSource docSource;
+    private final String password;
+    private final int[] userPages;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Context context;
+    private final IoMode ioMode;
+    private final FitPolicy pageFitPolicy;
+    private final Size viewSize;
+    private final boolean swipeVertical;
+    private final int spacingPx;
+    private final boolean autoSpacing;
+    private final boolean fitEachPage;
+    private final int spacingTopPx;
+    private final int spacingBottomPx;
+    private final boolean lazyLayout;
+    @Nullable
+    private final MetadataCache metadataCache;
+    private final int defaultPage;
+    private final BitmapPool bitmapPool;
+    private final boolean bestQuality;
+    private final boolean annotationRendering;
+    private final int zoomLevel;
+
+    private final CancellationSignal cancellationSignal = new CancellationSignal();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Must be called on the UI thread
+     */
+    DocumentLoader(DocumentSource docSource, String password, int[] userPages, PDFView pdfView, PdfiumCore pdfiumCore) {
+        this.docSource = docSource;
+        this.password = password;
+        this.userPages = userPages;
+        this.pdfViewRef = new WeakReference<>(pdfView);
+        this.pdfiumCore = pdfiumCore;
+        context = pdfView.getContext().getApplicationContext();
+        ioMode = pdfView.getIoMode();
+        pageFitPolicy = pdfView.getPageFitPolicy();
+        viewSize = new Size(pdfView.getWidth(), pdfView.getHeight());
+        swipeVertical = pdfView.isSwipeVertical();
+        spacingPx = pdfView.getSpacingPx();
+        autoSpacing = pdfView.isAutoSpacingEnabled();
+        fitEachPage = pdfView.isFitEachPage();
+        spacingTopPx = pdfView.getSpacingTopPx();
+        spacingBottomPx = pdfView.getSpacingBottomPx();
+        lazyLayout = pdfView.isLazyLayout();
+        metadataCache = pdfView.metadataCache;
+        defaultPage = pdfView.getDefaultPage();
+        bitmapPool = pdfView.bitmapPool;
+        bestQuality = pdfView.isBestQuality();
+        annotationRendering = pdfView.isAnnotationRendering();
+        zoomLevel = PagesLoader.zoomLevel(pdfView.getZoom());
+    }
+
+    void start() {
+        EXECUTOR.execute(this);
+    }
+
+    /**
+     * Must be called on the UI thread, nothing is delivered to the view afterwards
+     */
+    void cancel() {
+        cancelled = true;
+        cancellationSignal.cancel();
+    }
+
+    @Override
+    public void run() {
+        PdfDocument pdfDocument = null;
+        PdfFile pdfFile = null;
+        Future<PagePart> firstTile = null;
+        try {
+            long start = SystemClock.uptimeMillis();
+            if (docSource instanceof ProgressiveDocumentSource) {
+                pdfDocument = ((ProgressiveDocumentSource) docSource).createDocument(context,
+                        pdfiumCore, password, cancellationSignal);
+                waitForFirstPage(pdfDocument);
+            } else {
+                pdfDocument = docSource.createDocument(context, pdfiumCore, password, ioMode);
+            }
+            if (isCancelled()) {
+                return;
+            }
+            start = reportStage(LoadStage.OPEN, start);
+            IoStats openIoStats = pdfiumCore.getIoStats(pdfDocument);
+
+            pdfFile = new PdfFile(pdfiumCore, pdfDocument, pageFitPolicy, viewSize,
+                    userPages, swipeVertical, spacingPx, autoSpacing,
+                    fitEachPage, spacingTopPx, spacingBottomPx,
+                    true, metadataCache);
+            // the document is closed with the file from now on
+            pdfDocument = null;
+            pdfFile.setOpenIoStats(openIoStats);
+            int page = pdfFile.determineValidPageNumberFrom(defaultPage);
+            if (pdfFile.isProgressive()) {
+                // the first page was measured by the layout, the default page is displayed first
+                pdfFile.checkPageAvailable(0);
+                waitForPage(pdfFile, page);
+                if (isCancelled()) {
+                    return;
+                }
+            }
+            pdfFile.measurePages(page, page);
+            if (isCancelled()) {
+                return;
+            }
+            start = reportStage(LoadStage.FIRST_PAGE_GEOMETRY, start);
+
+            final PdfFile file = pdfFile;
+            float width = pdfFile.getPageWidth(page, Constants.THUMBNAIL_RATIO);
+            float height = pdfFile.getPageHeight(page, Constants.THUMBNAIL_RATIO);
+            firstTile = EXECUTOR.submit(() -> renderThumbnail(file, page, width, height));
+
+            if (!lazyLayout && !pdfFile.isLayoutFromMetadata() && !pdfFile.isProgressive()) {
+                measureRemainingPages(pdfFile);
+            }
+            PagePart thumbnail = waitFor(firstTile);
+            firstTile = null;
+            if (isCancelled()) {
+                releaseThumbnail(thumbnail);
+                return;
+            }
+            if (pdfFile.isLayoutComplete()) {
+                reportStage(LoadStage.REMAINING_LAYOUT, start);
+            }
+
+            postToView(view -> view.loadComplete(file, thumbnail), () -> {
+                file.dispose();
+                releaseThumbnail(thumbnail);
+            });
+            pdfFile = null;
+        } catch (Throwable t) {
+            if (!cancelled) {
+                postToView(view -> view.loadError(t), null);
+            }
+        } finally {
+            if (firstTile != null) {
+                // the document must not be closed while its page is rendered
+                cancellationSignal.cancel();
+                try {
+                    releaseThumbnail(waitFor(firstTile));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (pdfFile != null) {
+                pdfFile.dispose();
+            } else if (pdfDocument != null) {
+                pdfiumCore.closeDocument(pdfDocument);
+            }
+        }
+    }
+
+    /**
+     * The first page of a document still arriving is measured to lay out the others,
+     * the pages of a linearized document arrive in order. The page is marked available
+     * by the {@link PdfFile} once it is created
+     */
+    private void waitForFirstPage(PdfDocument pdfDocument) throws IOException {
+        ProgressiveSource source = pdfDocument.getProgressiveSource();
+        if (source == null) {
+            return;
+        }
+        int firstPage = userPages != null && userPages.length > 0 ? userPages[0] : 0;
+        while (!isCancelled() && !pdfiumCore.isPageAvailable(pdfDocument, firstPage)) {
+            source.waitForData(DATA_WAIT_MS);
+        }
+    }
+
+    /**
+     * Wait for the data of a page of a document still arriving, the page is marked available
+     * so that it can be measured and rendered before the {@link PageAvailabilityTracker} starts
+     */
+    private void waitForPage(PdfFile pdfFile, int page) throws IOException {
+        while (!isCancelled() && !pdfFile.checkPageAvailable(page)) {
+            pdfFile.waitForData(DATA_WAIT_MS);
+        }
+    }
+
+    /**
+     * @return true if the load was cancelled or the view is gone
+     */
+    private boolean isCancelled() {
+        return cancelled || pdfViewRef.get() == null;
+    }
+
+    /**
+     * Run the action on the UI thread, unless the load was cancelled meanwhile or the view is gone
+     *
+     * @param otherwise run instead, releases what the action was given
+     */
+    private void postToView(Consumer<PDFView> action, @Nullable Runnable otherwise) {
+        handler.post(() -> {
+            PDFView view = pdfViewRef.get();
+            if (cancelled || view == null) {
+                if (otherwise != null) {
+                    otherwise.run();
+                }
+                return;
+            }
+            action.accept(view);
+        });
+    }
+
+    /**
+     * Measure the pages laid out with the size of the first page, before the document is displayed
+     */
+    private void measureRemainingPages(PdfFile pdfFile) {
+        int[] sizes = new int[2 * PdfFile.PAGE_SIZES_BATCH];
+        int page = pdfFile.nextUnmeasuredPage(0);
+        while (!isCancelled() && page >= 0) {
+            int count = Math.min(PdfFile.PAGE_SIZES_BATCH, pdfFile.getPagesCount() - page);
+            if (!pdfFile.readPageSizes(page, count, sizes)) {
+                return;
+            }
+            // the file is not displayed yet, the layout can be changed from this thread
+            pdfFile.applyMeasuredPages(page, count, sizes);
+            page = pdfFile.nextUnmeasuredPage(page + count);
+        }
+    }
+
+    /**
+     * Render the thumbnail of the page, as {@link PagesLoader} would request it
+     *
+     * @return null if the page cannot be rendered or the load was cancelled
+     */
+    @Nullable
+    private PagePart renderThumbnail(PdfFile pdfFile, int page, float width, float height) {
+        int w = Math.round(width);
+        int h = Math.round(height);
+        if (w <= 0 || h <= 0) {
+            return null;
+        }
+        Bitmap bitmap;
+        try {
+            bitmap = bitmapPool.acquire(w, h, bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Cannot create bitmap", e);
+            return null;
+        }
+        long start = SystemClock.uptimeMillis();
+        boolean rendered = false;
+        pdfFile.pinPage(page);
+        try {
+            pdfFile.openPage(page);
+            rendered = !pdfFile.pageHasError(page) && !isCancelled()
+                    && pdfFile.renderPageBitmap(bitmap, page, new Rect(0, 0, w, h),
+                    annotationRendering, cancellationSignal);
+        } catch (PageRenderingException e) {
+            // reported by the view when it requests the page
+        } finally {
+            pdfFile.unpinPage(page);
+        }
+        if (!rendered) {
+            bitmapPool.release(bitmap);
+            return null;
+        }
+        reportStage(LoadStage.FIRST_TILE, start);
+        return new PagePart(page, bitmap, new RectF(0, 0, 1, 1), true, 0,
+                0, 0, 1, 1, zoomLevel, false);
+    }
+
+    private void releaseThumbnail(@Nullable PagePart thumbnail) {
+        if (thumbnail != null) {
+            bitmapPool.release(thumbnail.getRenderedBitmap());
+        }
+    }
+
+    @Nullable
+    private static PagePart waitFor(Future<PagePart> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Cannot render the first tile", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * @return start time of the next stage
+     */
+    private long reportStage(LoadStage stage, long start) {
+        long now = SystemClock.uptimeMillis();
+        long duration = now - start;
+        postToView(view -> view.callbacks.callOnLoadStage(stage, duration), null);
+        return now;
+    }
+}
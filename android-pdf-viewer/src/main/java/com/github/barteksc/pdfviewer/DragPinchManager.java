@@ -473,7 +473,11 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
             pdfView.moveRelativeTo(-distanceX, -distanceY);
         }
         if (!scaling || pdfView.doRenderDuringScale()) {
-            pdfView.loadPageByOffset();
+            if (pdfView.doRenderDuringScroll()) {
+                pdfView.scrollLoadScheduler.request();
+            } else {
+                pdfView.updatePageByOffset();
+            }
         }
 
         scrollValue = distanceY;
@@ -481,7 +485,8 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
     }
 
     private void onScrollEnd(MotionEvent event) {
-        pdfView.loadPages();
+        pdfView.scrollLoadScheduler.cancel();
+        pdfView.loadPageByOffset();
         hideHandle();
         if (!animationManager.isFlinging()) {
             pdfView.performPageSnap();
@@ -0,0 +1,223 @@
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.github.barteksc.pdfviewer.util.Constants;
+import com.vivlio.android.pdfium.TOCEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Layout metadata of the documents opened before, so that reopening a document
+ * does not measure every page nor walk its outline again.
+ * <p>
+ * Entries are named after the document fingerprint, see {@link DiskTileCache#fingerprint},
+ * and hold the page sizes, the page labels and the flattened table of contents,
+ * compressed with {@link Deflater#BEST_SPEED}. They are written on a background thread,
+ * the least recently used are deleted beyond {@link Constants.Cache#METADATA_CACHE_ENTRIES}.
+ */
+class MetadataCache {
+
+    private static final String TAG = MetadataCache.class.getSimpleName();
+
+    private static final String DIRECTORY = "pdfviewer-metadata";
+
+    private static final String EXTENSION = ".meta";
+
+    private static final int MAGIC = 0x50444d31; // PDM1
+
+    private static MetadataCache instance;
+
+    private final File directory;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PDF metadata writer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Metadata of a document, page sizes are in pixels at the given density
+     */
+    static class Metadata {
+
+        final int dpi;
+
+        /**
+         * Width and height of each document page
+         */
+        final int[] pageSizes;
+
+        /**
+         * Label of each document page, null if the document defines none
+         */
+        @Nullable
+        final String[] pageLabels;
+
+        final List<TOCEntry> tableOfContents;
+
+        Metadata(int dpi, int[] pageSizes, @Nullable String[] pageLabels, List<TOCEntry> tableOfContents) {
+            this.dpi = dpi;
+            this.pageSizes = pageSizes;
+            this.pageLabels = pageLabels;
+            this.tableOfContents = tableOfContents;
+        }
+
+        int getPageCount() {
+            return pageSizes.length / 2;
+        }
+    }
+
+    private MetadataCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The cache is shared by every {@link PDFView} of the process
+     */
+    static synchronized MetadataCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MetadataCache(new File(context.getCacheDir(), DIRECTORY));
+        }
+        return instance;
+    }
+
+    /**
+     * @return null if the document is not cached, or was cached at another density or page count
+     */
+    @Nullable
+    Metadata get(String fingerprint, int dpi, int pageCount) {
+        File file = new File(directory, fingerprint + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), 16 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != dpi || input.readInt() != pageCount) {
+                return null;
+            }
+            int[] pageSizes = new int[2 * pageCount];
+            for (int i = 0; i < pageSizes.length; i++) {
+                pageSizes[i] = input.readInt();
+            }
+            String[] pageLabels = null;
+            if (input.readBoolean()) {
+                pageLabels = new String[pageCount];
+                for (int page = 0; page < pageCount; page++) {
+                    pageLabels[page] = input.readBoolean() ? input.readUTF() : null;
+                }
+            }
+            int entriesCount = input.readInt();
+            List<TOCEntry> tableOfContents = new ArrayList<>(entriesCount);
+            for (int i = 0; i < entriesCount; i++) {
+                tableOfContents.add(new TOCEntry(input.readUTF(), input.readInt(), input.readInt(),
+                        input.readInt(), input.readFloat(), input.readFloat(), input.readFloat()));
+            }
+            // keep the access order
+            file.setLastModified(System.currentTimeMillis());
+            return new Metadata(dpi, pageSizes, pageLabels, Collections.unmodifiableList(tableOfContents));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read metadata " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Collect the metadata of the document and store it, in the background
+     */
+    void put(String fingerprint, PdfFile pdfFile) {
+        writer.execute(() -> {
+            Metadata metadata = pdfFile.collectMetadata();
+            if (metadata != null) {
+                write(fingerprint, metadata);
+            }
+        });
+    }
+
+    private void write(String fingerprint, Metadata metadata) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+        File file = new File(directory, fingerprint + EXTENSION);
+        File tmpFile = new File(directory, fingerprint + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(new FileOutputStream(tmpFile), deflater), 16 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(metadata.dpi);
+                output.writeInt(metadata.getPageCount());
+                for (int size : metadata.pageSizes) {
+                    output.writeInt(size);
+                }
+                output.writeBoolean(metadata.pageLabels != null);
+                if (metadata.pageLabels != null) {
+                    for (String label : metadata.pageLabels) {
+                        output.writeBoolean(label != null);
+                        if (label != null) {
+                            output.writeUTF(label);
+                        }
+                    }
+                }
+                output.writeInt(metadata.tableOfContents.size());
+                for (TOCEntry entry : metadata.tableOfContents) {
+                    output.writeUTF(entry.getTitle() != null ? entry.getTitle() : "");
+                    output.writeInt(entry.getPageIndex());
+                    output.writeInt(entry.getLevel());
+                    output.writeInt(entry.getParentIndex());
+                    output.writeFloat(entry.getX());
+                    output.writeFloat(entry.getY());
+                    output.writeFloat(entry.getZoom());
+                }
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write metadata " + file, e);
+            tmpFile.delete();
+            return;
+        } finally {
+            deflater.end();
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= Constants.Cache.METADATA_CACHE_ENTRIES) {
+            return;
+        }
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Long.compare(lastModified[i1], lastModified[i2]));
+        for (int i = 0; i < files.length - Constants.Cache.METADATA_CACHE_ENTRIES; i++) {
+            files[order[i]].delete();
+        }
+    }
+}
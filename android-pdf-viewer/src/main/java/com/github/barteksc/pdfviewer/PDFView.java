@@ -35,9 +35,10 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.HandlerThread;
+import android.os.SharedMemory;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.AttributeSet;
@@ -51,6 +52,7 @@ import android.widget.RelativeLayout;
 import androidx.annotation.FloatRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.core.content.ContextCompat;
 
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
@@ -65,6 +67,8 @@ import com.github.barteksc.pdfviewer.listener.OnLongPressListener;
 import com.github.barteksc.pdfviewer.listener.OnPageChangeListener;
 import com.github.barteksc.pdfviewer.listener.OnPageErrorListener;
 import com.github.barteksc.pdfviewer.listener.OnPageScrollListener;
+import com.github.barteksc.pdfviewer.listener.OnLoadStageListener;
+import com.github.barteksc.pdfviewer.listener.OnPageReadyListener;
 import com.github.barteksc.pdfviewer.listener.OnRenderListener;
 import com.github.barteksc.pdfviewer.listener.OnScaleListener;
 import com.github.barteksc.pdfviewer.listener.OnSearchBeginListener;
@@ -75,16 +79,23 @@ import com.github.barteksc.pdfviewer.listener.OnTapListener;
 import com.github.barteksc.pdfviewer.listener.OnTextSelectionListener;
 import com.github.barteksc.pdfviewer.model.Decoration;
 import com.github.barteksc.pdfviewer.model.Highlight;
+import com.github.barteksc.pdfviewer.model.LoadStage;
+import com.github.barteksc.pdfviewer.model.BitmapPoolStats;
+import com.github.barteksc.pdfviewer.model.NativeHandleStats;
 import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.model.RenderQueueStats;
 import com.github.barteksc.pdfviewer.model.SearchRecord;
 import com.github.barteksc.pdfviewer.model.SearchRecordItem;
+import com.github.barteksc.pdfviewer.model.SearchStats;
 import com.github.barteksc.pdfviewer.model.SentencedSearchResult;
 import com.github.barteksc.pdfviewer.scroll.ScrollHandle;
 import com.github.barteksc.pdfviewer.source.AssetSource;
 import com.github.barteksc.pdfviewer.source.ByteArraySource;
+import com.github.barteksc.pdfviewer.source.ByteBufferSource;
 import com.github.barteksc.pdfviewer.source.DocumentSource;
 import com.github.barteksc.pdfviewer.source.FileSource;
 import com.github.barteksc.pdfviewer.source.InputStreamSource;
+import com.github.barteksc.pdfviewer.source.SharedMemorySource;
 import com.github.barteksc.pdfviewer.source.UriSource;
 import com.github.barteksc.pdfviewer.util.ArrayUtils;
 import com.github.barteksc.pdfviewer.util.Constants;
@@ -94,6 +105,8 @@ import com.github.barteksc.pdfviewer.util.SearchUtils;
 import com.github.barteksc.pdfviewer.util.SentenceExtractor;
 import com.github.barteksc.pdfviewer.util.SnapEdge;
 import com.github.barteksc.pdfviewer.util.Util;
+import com.vivlio.android.pdfium.IoMode;
+import com.vivlio.android.pdfium.IoStats;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 import com.vivlio.android.pdfium.TOCEntry;
@@ -102,6 +115,7 @@ import com.vivlio.android.pdfium.util.SizeF;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -198,18 +212,25 @@ public class PDFView extends RelativeLayout {
                                 SearchRecord schRecord,
                                 int page,
                                 String query) {
-        searchRecords.put(page, schRecord);
+        addPageMatches(schRecord, page, query);
+    }
+
+    /**
+     * Keep the record of a page found by the {@link PDocSearchTask}
+     *
+     * @return true if the page matches, false if its text only looked like a match
+     */
+    boolean addPageMatches(SearchRecord schRecord, int page, String query) {
         List<SearchRecordItem> data = getAllMatchOnPage(schRecord);
-        if (pdfFile == null || pdfFile.pdfDocument == null) return;
+        if (pdfFile == null || pdfFile.pdfDocument == null || data.isEmpty()) return false;
+        searchRecords.put(page, schRecord);
         int totalRecord = data.size();
-        if (!data.isEmpty()) {
-            SearchRecordItem item = data.get(0);
-            if (currentFocusedSearchItem == null) {
-                currentFocusedSearchItem = item;
-                index = 0;
-                if (currentPage != item.pageIndex) {
-                    ContextCompat.getMainExecutor(getContext()).execute(() -> jumpTo(item.pageIndex));
-                }
+        SearchRecordItem item = data.get(0);
+        if (currentFocusedSearchItem == null) {
+            currentFocusedSearchItem = item;
+            index = 0;
+            if (currentPage != item.pageIndex) {
+                ContextCompat.getMainExecutor(getContext()).execute(() -> jumpTo(item.pageIndex));
             }
         }
         searchMatchedCount += totalRecord;
@@ -220,12 +241,22 @@ public class PDFView extends RelativeLayout {
                     );
         } catch (Exception ignored) {
         }
+        return true;
     }
 
     public int getSearchMatchedCount() {
         return searchMatchedCount;
     }
 
+    /**
+     * @return progress of the current or last search, null if there is none
+     */
+    @Nullable
+    public SearchStats getSearchStats() {
+        PDocSearchTask searchTask = task;
+        return searchTask != null ? searchTask.getStats() : null;
+    }
+
     public boolean getHasSelection() {
         return hasSelection;
     }
@@ -263,6 +294,57 @@ public class PDFView extends RelativeLayout {
      */
     CacheManager cacheManager;
 
+    /**
+     * Bitmaps evicted from the cache are reused for the next rendered parts
+     */
+    BitmapPool bitmapPool;
+
+    /**
+     * Rendered parts kept across loads, null if disabled
+     */
+    DiskTileCache diskTileCache;
+
+    /**
+     * Layout metadata kept across loads, null if disabled
+     */
+    MetadataCache metadataCache;
+
+    /**
+     * Only measure the first page before the document is displayed, see {@link Configurator#lazyLayout(boolean)}
+     */
+    private boolean lazyLayout = false;
+
+    /**
+     * How documents opened from a file descriptor are read, see {@link Configurator#ioMode(IoMode)}
+     */
+    private IoMode ioMode = IoMode.DIRECT;
+
+    /**
+     * Reads made by pdfium until the first part was rendered, null until then
+     */
+    private IoStats firstRenderIoStats;
+
+    /**
+     * Measures the pages in the background while the layout is lazy, null otherwise
+     */
+    private PageSizeResolver pageSizeResolver;
+
+    /**
+     * Follows the arrival of a document loaded from a progressive source, null once it arrived
+     */
+    private PageAvailabilityTracker pageAvailabilityTracker;
+
+    /**
+     * Page at the top of the screen before a layout change, and the offset of the screen in it
+     */
+    private int layoutAnchorPage;
+    private float layoutAnchorOffset;
+
+    /**
+     * Delay before applying measured page sizes again while an animation runs
+     */
+    private static final long LAYOUT_DEFER_DELAY_MS = 100;
+
     /**
      * Animation manager manage all offset and zoom animation
      */
@@ -310,9 +392,14 @@ public class PDFView extends RelativeLayout {
     private State state = State.DEFAULT;
 
     /**
-     * Async task used during the loading phase to decode a PDF document
+     * Loads the document in stages, null once loaded
+     */
+    private DocumentLoader documentLoader;
+
+    /**
+     * Time the remaining pages started to be measured after the document was displayed, -1 if they were not
      */
-    private DecodingAsyncTask decodingAsyncTask;
+    private long remainingLayoutStart = -1;
 
     /**
      * The thread {@link #renderingHandler} will run on
@@ -325,6 +412,37 @@ public class PDFView extends RelativeLayout {
 
     private PagesLoader pagesLoader;
 
+    /**
+     * Throttles part loading while the user is drag-scrolling
+     */
+    ScrollLoadScheduler scrollLoadScheduler;
+
+    /**
+     * Scroll velocity, used to preload parts in the direction of travel
+     */
+    final ScrollVelocityTracker scrollVelocityTracker = new ScrollVelocityTracker();
+
+    /**
+     * Maximum number of parts outside of the viewport requested by a load
+     */
+    private int preloadPartsBudget = Constants.Cache.PRELOAD_PARTS_BUDGET;
+
+    /**
+     * Offsets the running fling or animation will end at, loaded first
+     */
+    private final PointF prefetchTarget = new PointF();
+
+    private boolean hasPrefetchTarget = false;
+
+    /**
+     * Delay after a load of motion parts before checking whether the document stopped
+     */
+    private static final long MOTION_END_DELAY_MS = 150;
+
+    private final Runnable motionEndLoader = this::loadPages;
+
+    private final Runnable openedPagesTrimmer = this::trimOpenedPages;
+
     Callbacks callbacks = new Callbacks();
 
     /**
@@ -395,6 +513,13 @@ public class PDFView extends RelativeLayout {
      */
     private boolean renderDuringScale = false;
 
+    /**
+     * True if parts entering the viewport should be requested while the user is drag-scrolling,
+     * at most once per frame (see {@link ScrollLoadScheduler})<br/>
+     * False if they should be requested only when the finger is lifted
+     */
+    private boolean renderDuringScroll = true;
+
     /**
      * Antialiasing and bitmap filtering
      */
@@ -469,10 +594,12 @@ public class PDFView extends RelativeLayout {
         if (isInEditMode()) {
             return;
         }
-        cacheManager = new CacheManager();
+        bitmapPool = new BitmapPool(Constants.Cache.BITMAP_POOL_SIZE);
+        cacheManager = new CacheManager(bitmapPool, CacheManager.getDefaultMaxBytes(context));
         animationManager = new AnimationManager(this);
         dragPinchManager = new DragPinchManager(this, animationManager);
         pagesLoader = new PagesLoader(this);
+        scrollLoadScheduler = new ScrollLoadScheduler(this);
 
         paint = new Paint();
         debugPaint = new Paint();
@@ -889,8 +1016,8 @@ public class PDFView extends RelativeLayout {
 
         recycled = false;
         // Start decoding document
-        decodingAsyncTask = new DecodingAsyncTask(docSource, password, userPages, this, pdfiumCore);
-        decodingAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        documentLoader = new DocumentLoader(docSource, password, userPages, this, pdfiumCore);
+        documentLoader.start();
     }
 
     /**
@@ -973,6 +1100,10 @@ public class PDFView extends RelativeLayout {
     }
 
     void showPage(int pageNb) {
+        showPage(pageNb, true);
+    }
+
+    private void showPage(int pageNb, boolean loadPages) {
         if (recycled) {
             return;
         }
@@ -985,7 +1116,9 @@ public class PDFView extends RelativeLayout {
         pageNb = pdfFile.determineValidPageNumberFrom(pageNb);
         currentPage = pageNb;
 
-        loadPages();
+        if (loadPages) {
+            loadPages();
+        }
 
         if (scrollHandle != null && !documentFitsView()) {
             scrollHandle.setPageNum(currentPage + 1);
@@ -1235,14 +1368,20 @@ public class PDFView extends RelativeLayout {
 
         animationManager.stopAll();
         dragPinchManager.disable();
+        scrollLoadScheduler.cancel();
+        scrollVelocityTracker.reset();
+        removeCallbacks(motionEndLoader);
+        removeCallbacks(openedPagesTrimmer);
 
         // Stop tasks
         if (renderingHandler != null) {
             renderingHandler.stop();
-            renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+            renderingHandler.cancelAll();
         }
-        if (decodingAsyncTask != null) {
-            decodingAsyncTask.cancel(true);
+        if (documentLoader != null) {
+            // the loader closes the document it opened
+            documentLoader.cancel();
+            documentLoader = null;
         }
 
         // Clear caches
@@ -1252,6 +1391,17 @@ public class PDFView extends RelativeLayout {
             scrollHandle.destroyLayout();
         }
 
+        if (pageSizeResolver != null) {
+            pageSizeResolver.cancel();
+            pageSizeResolver = null;
+        }
+        if (pageAvailabilityTracker != null) {
+            pageAvailabilityTracker.cancel();
+            pageAvailabilityTracker = null;
+        }
+        remainingLayoutStart = -1;
+        firstRenderIoStats = null;
+
         if (pdfFile != null) {
             pdfFile.dispose();
             pdfFile = null;
@@ -1441,7 +1591,7 @@ public class PDFView extends RelativeLayout {
         }
 
         // Draws parts
-        for (PagePart part : cacheManager.getPageParts()) {
+        for (PagePart part : cacheManager.getPageParts(PagesLoader.zoomLevel(zoom))) {
             drawPart(canvas, part);
             if (callbacks.getOnDrawAll() != null
                     && !onDrawPagesNumbers.contains(part.getPage())) {
@@ -1506,10 +1656,9 @@ public class PDFView extends RelativeLayout {
             }
 
             canvas.translate(translateX, translateY);
-            SizeF size = pdfFile.getPageSize(page);
             listener.onLayerDrawn(canvas,
-                    toCurrentScale(size.getWidth()),
-                    toCurrentScale(size.getHeight()),
+                    pdfFile.getPageWidth(page, zoom),
+                    pdfFile.getPageHeight(page, zoom),
                     page);
 
             canvas.translate(-translateX, -translateY);
@@ -1535,26 +1684,27 @@ public class PDFView extends RelativeLayout {
         // Move to the target page
         float localTranslationX;
         float localTranslationY;
-        SizeF size = pdfFile.getPageSize(part.getPage());
+        float pageWidth = pdfFile.getPageWidth(part.getPage(), 1);
+        float pageHeight = pdfFile.getPageHeight(part.getPage(), 1);
 
         if (swipeVertical) {
             localTranslationY = pdfFile.getPageOffset(part.getPage(), zoom);
             float maxWidth = pdfFile.getMaxPageWidth();
-            localTranslationX = toCurrentScale(maxWidth - size.getWidth()) / 2;
+            localTranslationX = toCurrentScale(maxWidth - pageWidth) / 2;
         } else {
             localTranslationX = pdfFile.getPageOffset(part.getPage(), zoom);
             float maxHeight = pdfFile.getMaxPageHeight();
-            localTranslationY = toCurrentScale(maxHeight - size.getHeight()) / 2;
+            localTranslationY = toCurrentScale(maxHeight - pageHeight) / 2;
         }
         canvas.translate(localTranslationX, localTranslationY);
 
         srcRect.set(0, 0, renderedBitmap.getWidth(),
                 renderedBitmap.getHeight());
 
-        float offsetX = toCurrentScale(pageRelativeBounds.left * size.getWidth());
-        float offsetY = toCurrentScale(pageRelativeBounds.top * size.getHeight());
-        float width = toCurrentScale(pageRelativeBounds.width() * size.getWidth());
-        float height = toCurrentScale(pageRelativeBounds.height() * size.getHeight());
+        float offsetX = toCurrentScale(pageRelativeBounds.left * pageWidth);
+        float offsetY = toCurrentScale(pageRelativeBounds.top * pageHeight);
+        float width = toCurrentScale(pageRelativeBounds.width() * pageWidth);
+        float height = toCurrentScale(pageRelativeBounds.height() * pageHeight);
 
         // If we use float values for this rectangle, there will be
         // a possible gap between page parts, especially when
@@ -1590,26 +1740,206 @@ public class PDFView extends RelativeLayout {
      * the current page displayed
      */
     public void loadPages() {
+        loadPages(Constants.Cache.CACHE_SIZE);
+    }
+
+    /**
+     * Same as {@link #loadPages()}, but requests at most partsBudget parts
+     */
+    void loadPages(int partsBudget) {
         if (pdfFile == null || renderingHandler == null) {
             return;
         }
 
-        // Cancel all current tasks
-        renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+        measureVisiblePages();
+
+        // Keep tasks that are still needed, cancel the others
+        renderingHandler.beginBatch();
         cacheManager.makeANewSet();
 
-        pagesLoader.loadPages();
+        boolean motion = pagesLoader.loadPages(partsBudget);
+        renderingHandler.endBatch();
+        removeCallbacks(motionEndLoader);
+        if (motion) {
+            // the document may stop without any further move, load full quality parts then
+            postDelayed(motionEndLoader, MOTION_END_DELAY_MS);
+        }
         redraw();
         redrawSel();
     }
 
+    /**
+     * With a lazy layout, measure the pages from the top of the screen to the end of the area
+     * preloaded ahead before their parts are laid out. Measured pages after the top of the screen
+     * do not move it, a few passes are made as pages may get shorter and reveal others.
+     */
+    private void measureVisiblePages() {
+        for (int pass = 0; pass < 3 && !pdfFile.isLayoutComplete(); pass++) {
+            float offset = -(swipeVertical ? currentYOffset : currentXOffset);
+            float length = swipeVertical ? getHeight() : getWidth();
+            int firstPage = pdfFile.getPageAtOffset(offset, zoom);
+            int lastPage = pdfFile.getPageAtOffset(offset + length * (1 + Constants.MAX_PRELOAD_SCREENS), zoom);
+            saveLayoutAnchor();
+            if (!pdfFile.measurePages(firstPage, lastPage)) {
+                return;
+            }
+            restoreLayoutAnchor();
+        }
+        if (pdfFile.isLayoutComplete()) {
+            onLayoutComplete();
+        }
+    }
+
+    /**
+     * Apply page sizes measured by the {@link PageSizeResolver} or the {@link PageAvailabilityTracker}, keeping the screen
+     * at the same place in the page at its top
+     */
+    void applyMeasuredPages(PdfFile pdfFile, int firstPage, int count, int[] sizes) {
+        if (pdfFile != this.pdfFile) {
+            return;
+        }
+        if (hasPrefetchTarget) {
+            // flings and animations move to absolute offsets, wait for them to end
+            postDelayed(() -> applyMeasuredPages(pdfFile, firstPage, count, sizes), LAYOUT_DEFER_DELAY_MS);
+            return;
+        }
+        saveLayoutAnchor();
+        if (pdfFile.applyMeasuredPages(firstPage, count, sizes)) {
+            restoreLayoutAnchor();
+            loadPageByOffset();
+        }
+        if (pdfFile.isLayoutComplete()) {
+            pageSizeResolver = null;
+            onLayoutComplete();
+        }
+    }
+
+    /**
+     * Lay out a page whose data arrived and render it, see {@link PageAvailabilityTracker}
+     */
+    void onPageAvailable(PdfFile pdfFile, int page, int[] size) {
+        if (pdfFile != this.pdfFile) {
+            return;
+        }
+        applyMeasuredPages(pdfFile, page, 1, size);
+        callbacks.callOnPageReady(page);
+        loadPages();
+    }
+
+    /**
+     * Called once the whole document arrived, after its last page
+     */
+    void onDocumentComplete(PdfFile pdfFile) {
+        if (pdfFile != this.pdfFile) {
+            return;
+        }
+        pageAvailabilityTracker = null;
+        pdfFile.setDocumentComplete();
+        if (pdfFile.isLayoutComplete()) {
+            saveMetadata();
+        }
+        callbacks.callOnDocumentComplete();
+    }
+
+    /**
+     * Called once every page is measured after the document was displayed
+     */
+    private void onLayoutComplete() {
+        if (remainingLayoutStart >= 0) {
+            callbacks.callOnLoadStage(LoadStage.REMAINING_LAYOUT, SystemClock.uptimeMillis() - remainingLayoutStart);
+            remainingLayoutStart = -1;
+        }
+        saveMetadata();
+    }
+
+    /**
+     * Store the layout metadata of the document if it was not stored or changed,
+     * once every page is measured and the whole document arrived
+     */
+    private void saveMetadata() {
+        // the outline and page labels of a document still arriving may be missing
+        if (metadataCache != null && pdfFile.getFingerprint() != null && pdfFile.isMetadataStale()
+                && pdfFile.isDocumentComplete()) {
+            pdfFile.setMetadataStale(false);
+            metadataCache.put(pdfFile.getFingerprint(), pdfFile);
+        }
+    }
+
+    private void saveLayoutAnchor() {
+        float offset = -(swipeVertical ? currentYOffset : currentXOffset);
+        layoutAnchorPage = pdfFile.getPageAtOffset(offset, zoom);
+        layoutAnchorOffset = offset - pdfFile.getPageOffset(layoutAnchorPage, zoom);
+    }
+
+    private void restoreLayoutAnchor() {
+        float offset = pdfFile.getPageOffset(layoutAnchorPage, zoom) + layoutAnchorOffset;
+        if (swipeVertical) {
+            moveTo(currentXOffset, -offset);
+        } else {
+            moveTo(-offset, currentYOffset);
+        }
+        // the layout changed, the document did not scroll
+        scrollVelocityTracker.reset();
+    }
+
+    /**
+     * Close the least recently used native pages once too many are open. Displayed pages,
+     * selected pages and the page of the current text pointer stay open, as their native
+     * pointers are read directly by the touch and selection code.
+     */
+    private void trimOpenedPages() {
+        if (pdfFile == null) {
+            return;
+        }
+        float offset = swipeVertical ? currentYOffset : currentXOffset;
+        float length = swipeVertical ? getHeight() : getWidth();
+        int firstPage = pdfFile.getPageAtOffset(-offset, zoom) - 1;
+        int lastPage = pdfFile.getPageAtOffset(-offset + length, zoom) + 1;
+        boolean pinSelection = hasSelection && selPageSt >= 0;
+        int selectionStart = Math.min(selPageSt, selPageEd);
+        int selectionEnd = Math.max(selPageSt, selPageEd);
+        if (pinSelection) {
+            for (int page = selectionStart; page <= selectionEnd; page++) {
+                pdfFile.pinPage(page);
+            }
+        }
+        try {
+            pdfFile.trimOpenedPages(Constants.Cache.MAX_OPEN_PAGES, firstPage, lastPage,
+                    dragPinchManager.currentTextPtr);
+        } finally {
+            if (pinSelection) {
+                for (int page = selectionStart; page <= selectionEnd; page++) {
+                    pdfFile.unpinPage(page);
+                }
+            }
+        }
+    }
+
     /**
      * Called when the PDF is loaded
+     *
+     * @param thumbnail thumbnail of the default page rendered by the loader, null if it was not
      */
-    void loadComplete(PdfFile pdfFile) {
+    void loadComplete(PdfFile pdfFile, @Nullable PagePart thumbnail) {
         state = State.LOADED;
 
         this.pdfFile = pdfFile;
+        documentLoader = null;
+        pdfFile.setTrimRequest(() -> post(openedPagesTrimmer));
+        if (pdfFile.isProgressive()) {
+            // pages are measured as they arrive
+            if (!pdfFile.isLayoutComplete()) {
+                remainingLayoutStart = SystemClock.uptimeMillis();
+            }
+            pageAvailabilityTracker = new PageAvailabilityTracker(this, pdfFile);
+            pageAvailabilityTracker.start();
+        } else if (!pdfFile.isLayoutComplete()) {
+            remainingLayoutStart = SystemClock.uptimeMillis();
+            pageSizeResolver = new PageSizeResolver(this, pdfFile);
+            pageSizeResolver.start();
+        } else {
+            saveMetadata();
+        }
 
         //Crashlytics null pointer exception bug fix. not able repeat on device.
         if (renderingHandlerThread == null) {
@@ -1630,6 +1960,10 @@ public class PDFView extends RelativeLayout {
 
         callbacks.callOnLoadComplete(pdfFile.getPagesCount());
 
+        if (thumbnail != null) {
+            // drawn with the first frame, before any part is rendered
+            onBitmapRendered(thumbnail);
+        }
         jumpTo(defaultPage, false);
     }
 
@@ -1663,6 +1997,10 @@ public class PDFView extends RelativeLayout {
             callbacks.callOnRender(pdfFile.getPagesCount());
         }
 
+        if (firstRenderIoStats == null && !part.isThumbnail()) {
+            firstRenderIoStats = pdfFile.getIoStats();
+        }
+
         if (part.isThumbnail()) {
             cacheManager.cacheThumbnail(part);
         } else {
@@ -1765,6 +2103,12 @@ public class PDFView extends RelativeLayout {
             currentYOffset = offsetY;
         }
 
+        if (dragPinchManager.isScaling()) {
+            scrollVelocityTracker.reset();
+        } else {
+            scrollVelocityTracker.onMove(currentXOffset, currentYOffset, zoom);
+        }
+
 
         float positionOffset = getPositionOffset();
 
@@ -1797,8 +2141,45 @@ public class PDFView extends RelativeLayout {
         return dragPinchManager.isScaling();
     }
 
+    /**
+     * Load the viewport at the given offsets before the current one,
+     * until {@link #clearPrefetchTarget()}
+     */
+    void setPrefetchTarget(float offsetX, float offsetY) {
+        prefetchTarget.set(offsetX, offsetY);
+        hasPrefetchTarget = true;
+        loadPages();
+    }
+
+    void clearPrefetchTarget() {
+        hasPrefetchTarget = false;
+    }
+
+    /**
+     * @return offsets the running fling or animation will end at, null if unknown
+     */
+    @Nullable
+    PointF getPrefetchTarget() {
+        return hasPrefetchTarget ? prefetchTarget : null;
+    }
+
     void loadPageByOffset() {
-        if (0 == pdfFile.getPagesCount()) {
+        loadPageByOffset(Constants.Cache.CACHE_SIZE);
+    }
+
+    void loadPageByOffset(int partsBudget) {
+        if (pdfFile == null || 0 == pdfFile.getPagesCount()) {
+            return;
+        }
+        updatePageByOffset();
+        loadPages(partsBudget);
+    }
+
+    /**
+     * Update the current page from offset, without loading any part
+     */
+    void updatePageByOffset() {
+        if (pdfFile == null || 0 == pdfFile.getPagesCount()) {
             return;
         }
 
@@ -1814,9 +2195,7 @@ public class PDFView extends RelativeLayout {
         int page = pdfFile.getPageAtOffset(-(offset - screenCenter), zoom);
 
         if (page >= 0 && page <= pdfFile.getPagesCount() - 1 && page != getCurrentPage()) {
-            showPage(page);
-        } else {
-            loadPages();
+            showPage(page, false);
         }
     }
 
@@ -2023,6 +2402,10 @@ public class PDFView extends RelativeLayout {
         this.defaultPage = defaultPage;
     }
 
+    int getDefaultPage() {
+        return defaultPage;
+    }
+
     public void resetZoom() {
         zoomTo(minZoom);
     }
@@ -2109,6 +2492,30 @@ public class PDFView extends RelativeLayout {
         this.renderDuringScale = renderDuringScale;
     }
 
+    public void enableRenderDuringScroll(boolean renderDuringScroll) {
+        this.renderDuringScroll = renderDuringScroll;
+    }
+
+    /**
+     * @param partsBudget   maximum number of parts requested by a single load while drag-scrolling
+     * @param frameInterval number of display frames between two loads while drag-scrolling
+     */
+    public void setScrollLoadThrottle(int partsBudget, int frameInterval) {
+        scrollLoadScheduler.setPartsBudget(partsBudget);
+        scrollLoadScheduler.setFrameInterval(frameInterval);
+    }
+
+    /**
+     * @param preloadPartsBudget maximum number of parts outside of the viewport requested by a single load
+     */
+    public void setPreloadPartsBudget(int preloadPartsBudget) {
+        this.preloadPartsBudget = Math.max(0, preloadPartsBudget);
+    }
+
+    public int getPreloadPartsBudget() {
+        return preloadPartsBudget;
+    }
+
     public boolean isAntialiasing() {
         return enableAntialiasing;
     }
@@ -2177,6 +2584,22 @@ public class PDFView extends RelativeLayout {
         return fitEachPage;
     }
 
+    private void setLazyLayout(boolean lazyLayout) {
+        this.lazyLayout = lazyLayout;
+    }
+
+    public boolean isLazyLayout() {
+        return lazyLayout;
+    }
+
+    private void setIoMode(IoMode ioMode) {
+        this.ioMode = ioMode;
+    }
+
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
     public boolean isPageSnap() {
         return pageSnap;
     }
@@ -2204,6 +2627,101 @@ public class PDFView extends RelativeLayout {
         return renderDuringScale;
     }
 
+    public boolean doRenderDuringScroll() {
+        return renderDuringScroll;
+    }
+
+    /**
+     * Set the maximum size in bytes of rendered parts kept in memory,
+     * by default a fraction of the application memory class
+     */
+    public void setCacheSize(long maxBytes) {
+        cacheManager.setMaxBytes(maxBytes);
+    }
+
+    public long getCacheSize() {
+        return cacheManager.getMaxBytes();
+    }
+
+    /**
+     * Keep rendered parts on disk, so that they are not rendered again
+     * when the same document is loaded later
+     *
+     * @param maxBytes maximum size in bytes of the tiles kept on disk, 0 to disable the disk cache
+     */
+    public void setDiskCacheSize(long maxBytes) {
+        diskTileCache = maxBytes > 0 ? DiskTileCache.getInstance(getContext(), maxBytes) : null;
+    }
+
+    /**
+     * Keep the page sizes, page labels and table of contents of the documents on disk,
+     * so that they are not read again when the same document is loaded later
+     */
+    public void setMetadataCacheEnabled(boolean enabled) {
+        metadataCache = enabled ? MetadataCache.getInstance(getContext()) : null;
+    }
+
+    public boolean isMetadataCacheEnabled() {
+        return metadataCache != null;
+    }
+
+    public BitmapPoolStats getBitmapPoolStats() {
+        return bitmapPool.getStats();
+    }
+
+    /**
+     * Returns null if document is not loaded
+     */
+    @Nullable
+    public NativeHandleStats getNativeHandleStats() {
+        if (pdfFile == null) {
+            return null;
+        }
+        return pdfFile.getNativeHandleStats();
+    }
+
+    /**
+     * Returns reads made by pdfium to open the document, null if document is not loaded
+     */
+    @Nullable
+    public IoStats getOpenIoStats() {
+        if (pdfFile == null) {
+            return null;
+        }
+        return pdfFile.getOpenIoStats();
+    }
+
+    /**
+     * Returns reads made by pdfium until the first part was rendered, including the open,
+     * null until then
+     */
+    @Nullable
+    public IoStats getFirstRenderIoStats() {
+        return firstRenderIoStats;
+    }
+
+    /**
+     * Returns reads made by pdfium since the document was opened, null if document is not loaded
+     */
+    @Nullable
+    public IoStats getIoStats() {
+        if (pdfFile == null) {
+            return null;
+        }
+        return pdfFile.getIoStats();
+    }
+
+    /**
+     * Returns null if document is not loaded
+     */
+    @Nullable
+    public RenderQueueStats getRenderQueueStats() {
+        if (renderingHandler == null) {
+            return null;
+        }
+        return renderingHandler.getStats();
+    }
+
     /**
      * Returns null if document is not loaded
      */
@@ -2224,6 +2742,18 @@ public class PDFView extends RelativeLayout {
         return pdfFile.getBookmarks();
     }
 
+    /**
+     * @return label of the page as defined by the document, such as "iv" or "A-1",
+     * null if the document defines none or is not loaded
+     */
+    @Nullable
+    public String getPageLabel(int page) {
+        if (pdfFile == null) {
+            return null;
+        }
+        return pdfFile.getPageLabel(page);
+    }
+
     /**
      * Retrieves and returns the table of contents (TOC) from the PDF file,
      * sorted using the provided comparator.
@@ -2337,12 +2867,27 @@ public class PDFView extends RelativeLayout {
     }
 
     /**
-     * Use stream as the pdf source. Stream will be written to bytearray, because native code does not support Java Streams
+     * Use stream as the pdf source. Stream will be written to a temporary file, because native code does not support Java Streams
      */
     public Configurator fromStream(InputStream stream) {
         return new Configurator(new InputStreamSource(stream));
     }
 
+    /**
+     * Use the remaining bytes of a buffer as the pdf source, a direct buffer is read without copying it
+     */
+    public Configurator fromByteBuffer(ByteBuffer buffer) {
+        return new Configurator(new ByteBufferSource(buffer));
+    }
+
+    /**
+     * Use shared memory as the pdf source, it is mapped without copying it
+     */
+    @RequiresApi(Build.VERSION_CODES.O_MR1)
+    public Configurator fromSharedMemory(SharedMemory sharedMemory) {
+        return new Configurator(new SharedMemorySource(sharedMemory));
+    }
+
     /**
      * Use custom source as pdf source
      */
@@ -2376,6 +2921,10 @@ public class PDFView extends RelativeLayout {
 
         private OnRenderListener onRenderListener;
 
+        private OnLoadStageListener onLoadStageListener;
+
+        private OnPageReadyListener onPageReadyListener;
+
         private OnTapListener onTapListener;
 
         private OnScaleListener onScaleListener;
@@ -2440,6 +2989,24 @@ public class PDFView extends RelativeLayout {
 
         private View hideView = null;
 
+        private boolean renderDuringScroll = true;
+
+        private int scrollPartsBudget = Constants.Cache.SCROLL_PARTS_BUDGET;
+
+        private int scrollFrameInterval = Constants.SCROLL_LOAD_FRAME_INTERVAL;
+
+        private int preloadPartsBudget = Constants.Cache.PRELOAD_PARTS_BUDGET;
+
+        private long cacheSize = 0;
+
+        private long diskCacheSize = 0;
+
+        private boolean lazyLayout = false;
+
+        private boolean metadataCache = true;
+
+        private IoMode ioMode = IoMode.DIRECT;
+
         private Configurator(DocumentSource documentSource) {
             this.documentSource = documentSource;
         }
@@ -2542,6 +3109,23 @@ public class PDFView extends RelativeLayout {
             return this;
         }
 
+        /**
+         * Receive the duration of each stage of the load, see {@link LoadStage}
+         */
+        public Configurator onLoadStage(OnLoadStageListener onLoadStageListener) {
+            this.onLoadStageListener = onLoadStageListener;
+            return this;
+        }
+
+        /**
+         * Know when the pages of a document still arriving can be displayed,
+         * see {@link com.github.barteksc.pdfviewer.source.ProgressiveDocumentSource}
+         */
+        public Configurator onPageReady(OnPageReadyListener onPageReadyListener) {
+            this.onPageReadyListener = onPageReadyListener;
+            return this;
+        }
+
         public Configurator onTap(OnTapListener onTapListener) {
             this.onTapListener = onTapListener;
             return this;
@@ -2684,6 +3268,88 @@ public class PDFView extends RelativeLayout {
         }
 
 
+        /**
+         * Request parts entering the viewport while the user is drag-scrolling,
+         * instead of waiting for the finger to be lifted (enabled by default)
+         */
+        public Configurator renderDuringScroll(boolean renderDuringScroll) {
+            this.renderDuringScroll = renderDuringScroll;
+            return this;
+        }
+
+        /**
+         * @param partsBudget   maximum number of parts requested per load while drag-scrolling
+         * @param frameInterval load at most once every frameInterval display frames while drag-scrolling
+         */
+        public Configurator scrollLoadThrottle(int partsBudget, int frameInterval) {
+            this.scrollPartsBudget = partsBudget;
+            this.scrollFrameInterval = frameInterval;
+            return this;
+        }
+
+        /**
+         * @param partsBudget maximum number of parts outside of the viewport requested by a single load
+         */
+        public Configurator preloadPartsBudget(int partsBudget) {
+            this.preloadPartsBudget = partsBudget;
+            return this;
+        }
+
+        /**
+         * @param maxBytes maximum size in bytes of rendered parts kept in memory, 0 to keep the size
+         *                 set with {@link PDFView#setCacheSize(long)}, by default a fraction of the
+         *                 application memory class
+         */
+        public Configurator cacheSize(long maxBytes) {
+            this.cacheSize = maxBytes;
+            return this;
+        }
+
+        /**
+         * Keep rendered parts on disk, see {@link Constants.Cache#DISK_CACHE_SIZE} for the default size
+         */
+        public Configurator diskCache(boolean enabled) {
+            return diskCacheSize(enabled ? Constants.Cache.DISK_CACHE_SIZE : 0);
+        }
+
+        /**
+         * @param maxBytes maximum size in bytes of the rendered parts kept on disk, 0 to disable (default)
+         */
+        public Configurator diskCacheSize(long maxBytes) {
+            this.diskCacheSize = maxBytes;
+            return this;
+        }
+
+        /**
+         * Display the document once its first page is measured, instead of measuring every page first.
+         * Other pages are laid out with the size of the first page and corrected as they are measured,
+         * on demand when they get close to the screen and in the background (disabled by default)
+         */
+        public Configurator lazyLayout(boolean lazyLayout) {
+            this.lazyLayout = lazyLayout;
+            return this;
+        }
+
+        /**
+         * Keep the page sizes, page labels and table of contents on disk. When the same document is
+         * loaded again it is displayed with the stored sizes, which are checked in the background
+         * and corrected like a lazy layout (enabled by default)
+         */
+        public Configurator metadataCache(boolean metadataCache) {
+            this.metadataCache = metadataCache;
+            return this;
+        }
+
+        /**
+         * How pdfium reads documents opened from a file descriptor, files, URIs and assets.
+         * {@link IoMode#MMAP} and {@link IoMode#BLOCK_CACHE} save most of the small reads made
+         * on large, non-linearized files (default {@link IoMode#DIRECT})
+         */
+        public Configurator ioMode(IoMode ioMode) {
+            this.ioMode = ioMode;
+            return this;
+        }
+
         public Configurator disableLongPress() {
             PDFView.this.dragPinchManager.disableLongPress();
             return this;
@@ -2709,6 +3375,8 @@ public class PDFView extends RelativeLayout {
             PDFView.this.callbacks.setOnPageChange(onPageChangeListener);
             PDFView.this.callbacks.setOnPageScroll(onPageScrollListener);
             PDFView.this.callbacks.setOnRender(onRenderListener);
+            PDFView.this.callbacks.setOnLoadStage(onLoadStageListener);
+            PDFView.this.callbacks.setOnPageReady(onPageReadyListener);
             PDFView.this.callbacks.setOnTap(onTapListener);
             PDFView.this.callbacks.setOnScale(onScaleListener);
             PDFView.this.callbacks.setOnSelection(onSelectionListener);
@@ -2736,11 +3404,21 @@ public class PDFView extends RelativeLayout {
             PDFView.this.setAutoSpacing(autoSpacing);
             PDFView.this.setPageFitPolicy(pageFitPolicy);
             PDFView.this.setFitEachPage(fitEachPage);
+            PDFView.this.setLazyLayout(lazyLayout);
+            PDFView.this.setIoMode(ioMode);
             PDFView.this.setPageSnap(pageSnap);
             PDFView.this.setPageFling(pageFling);
             PDFView.this.setOnScrollHideView(hideView);
             PDFView.this.setMergedSelectionLine(isSelectionLineMerged, lineThreshHoldPt, verticalExpandPercent);
             PDFView.this.setSearchVerticalExpandPercent(this.searchItemVerticalExpandPercent);
+            PDFView.this.enableRenderDuringScroll(renderDuringScroll);
+            PDFView.this.setScrollLoadThrottle(scrollPartsBudget, scrollFrameInterval);
+            PDFView.this.setPreloadPartsBudget(preloadPartsBudget);
+            if (cacheSize > 0) {
+                PDFView.this.setCacheSize(cacheSize);
+            }
+            PDFView.this.setDiskCacheSize(diskCacheSize);
+            PDFView.this.setMetadataCacheEnabled(metadataCache);
 
             if (selectionPaintView == null) {
                 throw new IllegalArgumentException("Did you forget to PDFView#setSelectionPaintView(PDocSelection)?");
@@ -1,20 +1,46 @@
 package com.github.barteksc.pdfviewer;
 
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
 import com.github.barteksc.pdfviewer.model.SearchRecord;
+import com.github.barteksc.pdfviewer.model.SearchStats;
+import com.github.barteksc.pdfviewer.util.Constants;
 import com.vivlio.android.pdfium.PdfiumCore;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
+/**
+ * Searches the pages of the document in order. The text of the pages is extracted in batches of
+ * {@link Constants.Search#TEXT_BATCH_SIZE} pages, each holding the native lock briefly and after
+ * the renders in progress, while the previous batches are matched in Java by a shared pool of
+ * {@link Constants.Search#MATCHER_THREADS} threads. Only the pages which may match are searched
+ * by pdfium for the matches themselves, results are reported in page order.
+ */
 @SuppressWarnings("unused")
 public class PDocSearchTask implements Runnable, AutoCloseable {
 
 
     private static final String TAG = "PDocSearchTask";
+
+    /**
+     * FPDF_MATCHCASE search flag
+     */
+    private static final int MATCH_CASE = 1;
+
+    private static ExecutorService matcherPool;
+
     private final ArrayList<SearchRecord> arr = new ArrayList<>();
     private final WeakReference<PDFView> pdfViewRef;
     private final AtomicBoolean abort = new AtomicBoolean(false);
@@ -25,6 +51,15 @@ public class PDocSearchTask implements Runnable, AutoCloseable {
     private volatile long keyStr;
     int flag = 0;
 
+    private int pageCount;
+    private int pagesSearched;
+    private int matchedPages;
+    private long startNanos;
+    private long endNanos;
+    private long[] lockWaits = new long[16];
+    private long[] renderYields = new long[16];
+    private int batches;
+
     public PDocSearchTask(PDFView pdfView, String key) {
         this.pdfViewRef = new WeakReference<>(pdfView);
         this.query = key.trim();
@@ -41,21 +76,138 @@ public class PDocSearchTask implements Runnable, AutoCloseable {
         return keyStr;
     }
 
+    /**
+     * Text of a batch of pages, matched on the pool
+     */
+    private static class Batch {
+
+        final int firstPage;
+
+        final Future<boolean[]> matches;
+
+        Batch(int firstPage, Future<boolean[]> matches) {
+            this.firstPage = firstPage;
+            this.matches = matches;
+        }
+    }
+
+    private static synchronized ExecutorService getMatcherPool() {
+        if (matcherPool == null) {
+            matcherPool = Executors.newFixedThreadPool(Math.max(1, Constants.Search.MATCHER_THREADS), runnable -> {
+                Thread thread = new Thread(runnable, "PDF search");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return matcherPool;
+    }
+
     @Override
     public void run() {
         PDFView pdfView = pdfViewRef.get();
         if (pdfView == null || finished.get()) return;
-        for (int pageIndex = 0; pageIndex < pdfView.getPageCount(); pageIndex++) {
-            if (abort.get()) break;
-            SearchRecord schRecord = pdfView.findPageCached(key, pageIndex, 0);
-            if (schRecord != null) {
-                pdfView.notifyItemAdded(this, arr, schRecord, pageIndex, query);
+        PdfFile pdfFile = pdfView.pdfFile;
+        PageTextMatcher matcher = new PageTextMatcher(query, (flag & MATCH_CASE) != 0);
+        ExecutorService pool = getMatcherPool();
+        ArrayDeque<Batch> pending = new ArrayDeque<>();
+        int batchSize = Math.max(1, Constants.Search.TEXT_BATCH_SIZE);
+        long[] waits = new long[2];
+        synchronized (this) {
+            pageCount = pdfView.getPageCount();
+            startNanos = SystemClock.elapsedRealtimeNanos();
+        }
+        try {
+            for (int page = 0; page < pageCount && pdfFile != null; page += batchSize) {
+                if (abort.get() || pdfView.pdfFile != pdfFile) break;
+                int count = Math.min(batchSize, pageCount - page);
+                String[] texts = new String[count];
+                if (!pdfFile.readPagesText(page, count, texts, waits)) break;
+                addBatch(count, waits[0], waits[1]);
+                pending.add(new Batch(page, pool.submit(() -> matcher.mayMatch(texts))));
+                // report the batches already matched, wait when too far ahead
+                while (!pending.isEmpty() && (pending.peek().matches.isDone()
+                        || pending.size() > Constants.Search.MAX_PENDING_BATCHES)) {
+                    report(pdfView, pdfFile, pending.poll());
+                }
+            }
+            while (!pending.isEmpty() && !abort.get()) {
+                report(pdfView, pdfFile, pending.poll());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Batch batch : pending) {
+                batch.matches.cancel(false);
+            }
+        }
+        synchronized (this) {
+            endNanos = SystemClock.elapsedRealtimeNanos();
         }
         finished.set(true);
         pdfView.getHandler().post(() -> pdfView.endSearch(arr));
     }
 
+    /**
+     * Search the matching pages of the batch with pdfium, in page order
+     */
+    private void report(PDFView pdfView, PdfFile pdfFile, Batch batch) throws InterruptedException {
+        boolean[] matches;
+        try {
+            matches = batch.matches.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Cannot match pages from " + batch.firstPage, e.getCause());
+            return;
+        }
+        for (int i = 0; i < matches.length && !abort.get(); i++) {
+            if (!matches[i]) {
+                continue;
+            }
+            int pageIndex = batch.firstPage + i;
+            // the text page must stay open while it is searched
+            pdfFile.pinPage(pageIndex);
+            try {
+                // pdfium searches the whole page, the Java text indices may not match its own
+                if (pdfView.addPageMatches(new SearchRecord(pageIndex, 0), pageIndex, query)) {
+                    synchronized (this) {
+                        matchedPages++;
+                    }
+                }
+            } finally {
+                pdfFile.unpinPage(pageIndex);
+            }
+        }
+    }
+
+    private synchronized void addBatch(int count, long renderYieldNanos, long lockWaitNanos) {
+        if (batches == lockWaits.length) {
+            lockWaits = Arrays.copyOf(lockWaits, 2 * batches);
+            renderYields = Arrays.copyOf(renderYields, 2 * batches);
+        }
+        renderYields[batches] = renderYieldNanos;
+        lockWaits[batches++] = lockWaitNanos;
+        pagesSearched += count;
+    }
+
+    /**
+     * @return progress of the search, its throughput, how long it yielded to renders and waited for the locks
+     */
+    @NonNull
+    public synchronized SearchStats getStats() {
+        long end = endNanos != 0 ? endNanos : SystemClock.elapsedRealtimeNanos();
+        long durationMs = startNanos != 0 ? (end - startNanos) / 1_000_000 : 0;
+        return new SearchStats(pagesSearched, pageCount, matchedPages, durationMs,
+                p95Ms(lockWaits, batches), p95Ms(renderYields, batches), finished.get());
+    }
+
+    private static float p95Ms(long[] nanos, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * count) - 1] / 1e6f;
+    }
+
     public void start() {
         if (!finished.get() && !executor.isShutdown()) {
             executor.submit(this);
@@ -0,0 +1,93 @@
+package com.github.barteksc.pdfviewer;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Follows the arrival of a document loaded from a
+ * {@link com.github.barteksc.pdfviewer.source.ProgressiveDocumentSource}. Pages are checked
+ * from the current one, so that pdfium asks the source for the data of the displayed pages first.
+ * Each page is measured once it arrived and applied on the UI thread by
+ * {@link PDFView#onPageAvailable(PdfFile, int, int[])}, it replaces the {@link PageSizeResolver}.
+ */
+class PageAvailabilityTracker implements Runnable {
+
+    private static final String TAG = PageAvailabilityTracker.class.getSimpleName();
+
+    /**
+     * Longest wait for data before checking the current page again
+     */
+    private static final long DATA_WAIT_MS = 100;
+
+    private final PDFView pdfView;
+
+    private final PdfFile pdfFile;
+
+    private volatile boolean cancelled;
+
+    PageAvailabilityTracker(PDFView pdfView, PdfFile pdfFile) {
+        this.pdfView = pdfView;
+        this.pdfFile = pdfFile;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "PDF availability");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int page = nextUnavailablePage();
+            while (!cancelled && page >= 0) {
+                if (!pdfFile.checkPageAvailable(page)) {
+                    pdfFile.waitForData(DATA_WAIT_MS);
+                } else {
+                    int[] size = new int[2];
+                    if (!pdfFile.readPageSizes(page, 1, size)) {
+                        return;
+                    }
+                    final int availablePage = page;
+                    pdfView.post(() -> {
+                        if (!cancelled) {
+                            pdfView.onPageAvailable(pdfFile, availablePage, size);
+                        }
+                    });
+                }
+                page = nextUnavailablePage();
+            }
+            while (!cancelled && !pdfFile.isDocumentComplete()) {
+                pdfFile.waitForData(DATA_WAIT_MS);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Document stopped arriving", e);
+            return;
+        }
+        pdfView.post(() -> {
+            if (!cancelled) {
+                pdfView.onDocumentComplete(pdfFile);
+            }
+        });
+    }
+
+    /**
+     * @return first page not available from the current one, then from the first one, -1 if there is none
+     */
+    private int nextUnavailablePage() {
+        int pagesCount = pdfFile.getPagesCount();
+        int currentPage = Math.max(0, Math.min(pdfView.getCurrentPage(), pagesCount - 1));
+        for (int i = 0; i < pagesCount; i++) {
+            int page = (currentPage + i) % pagesCount;
+            if (!pdfFile.isPageAvailable(page)) {
+                return page;
+            }
+        }
+        return -1;
+    }
+}
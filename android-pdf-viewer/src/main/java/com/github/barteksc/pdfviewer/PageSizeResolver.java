@@ -0,0 +1,58 @@
+package com.github.barteksc.pdfviewer;
+
+import com.github.barteksc.pdfviewer.util.Constants;
+
+/**
+ * Measures the pages of a document laid out lazily, see {@link PDFView.Configurator#lazyLayout(boolean)},
+ * or laid out with the sizes stored by the {@link MetadataCache}.
+ * Pages are measured in batches of {@link Constants#LAZY_LAYOUT_BATCH_SIZE} on a background thread,
+ * each batch is applied on the UI thread by {@link PDFView#applyMeasuredPages(PdfFile, int, int, int[])}.
+ */
+class PageSizeResolver implements Runnable {
+
+    private final PDFView pdfView;
+
+    private final PdfFile pdfFile;
+
+    private volatile boolean cancelled;
+
+    PageSizeResolver(PDFView pdfView, PdfFile pdfFile) {
+        this.pdfView = pdfView;
+        this.pdfFile = pdfFile;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "PDF layout");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void run() {
+        int pagesCount = pdfFile.getPagesCount();
+        int page = pdfFile.nextUnmeasuredPage(0);
+        while (!cancelled && page >= 0) {
+            int batchSize = Math.min(Math.max(Constants.LAZY_LAYOUT_BATCH_SIZE, 1), pagesCount - page);
+            int[] sizes = new int[2 * batchSize];
+            if (cancelled || !pdfFile.readPageSizes(page, batchSize, sizes)) {
+                return;
+            }
+            final int firstPage = page;
+            pdfView.post(() -> {
+                if (!cancelled) {
+                    pdfView.applyMeasuredPages(pdfFile, firstPage, batchSize, sizes);
+                }
+            });
+            // pages measured on demand meanwhile are skipped
+            page = pdfFile.nextUnmeasuredPage(firstPage + batchSize);
+        }
+    }
+}
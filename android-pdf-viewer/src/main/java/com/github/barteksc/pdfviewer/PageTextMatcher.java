@@ -0,0 +1,91 @@
+package com.github.barteksc.pdfviewer;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Finds the pages which may match a search in their extracted text, in plain Java, off the native lock.
+ * Matching is looser than pdfium's: case is ignored unless required, whitespace and hyphens are
+ * skipped, so that every page pdfium matches is found. pdfium then finds the matches themselves
+ * on these pages only.
+ * <p>
+ * Text is compared by code point: pdfium counts characters outside the Basic Multilingual Plane
+ * as one where Java counts two chars, so no index is reported, pdfium searches the page from its start.
+ */
+class PageTextMatcher {
+
+    /**
+     * Folded code points of the query, without the skipped ones
+     */
+    private final int[] query;
+
+    private final boolean matchCase;
+
+    PageTextMatcher(String query, boolean matchCase) {
+        this.matchCase = matchCase;
+        this.query = query.codePoints()
+                .filter(codePoint -> !isSkipped(codePoint))
+                .map(this::fold)
+                .toArray();
+    }
+
+    /**
+     * @param texts text of each page, null if it could not be read
+     * @return for each page, true if it may match
+     */
+    boolean[] mayMatch(String[] texts) {
+        boolean[] matches = new boolean[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            matches[i] = mayMatch(texts[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return true if pdfium may find a match in the text
+     */
+    boolean mayMatch(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return false;
+        }
+        if (query.length == 0) {
+            // only separators, left to pdfium
+            return true;
+        }
+        int length = text.length();
+        for (int start = 0; start < length; start += Character.charCount(text.codePointAt(start))) {
+            int codePoint = text.codePointAt(start);
+            if (isSkipped(codePoint) || fold(codePoint) != query[0]) {
+                continue;
+            }
+            int matched = 1;
+            int i = start + Character.charCount(codePoint);
+            while (matched < query.length && i < length) {
+                codePoint = text.codePointAt(i);
+                i += Character.charCount(codePoint);
+                if (isSkipped(codePoint)) {
+                    continue;
+                }
+                if (fold(codePoint) != query[matched]) {
+                    break;
+                }
+                matched++;
+            }
+            if (matched == query.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int fold(int codePoint) {
+        return matchCase ? codePoint : Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+
+    /**
+     * Separators pdfium may match loosely, line breaks and hyphenation included
+     */
+    private static boolean isSkipped(int codePoint) {
+        return Character.isWhitespace(codePoint) || codePoint == '\u00a0' || codePoint == '\u00ad'
+                || codePoint == '-' || codePoint == '\u0002';
+    }
+}
@@ -15,12 +15,12 @@
  */
 package com.github.barteksc.pdfviewer;
 
+import android.graphics.PointF;
 import android.graphics.RectF;
 
 import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.MathUtils;
 import com.github.barteksc.pdfviewer.util.Util;
-import com.vivlio.android.pdfium.util.SizeF;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -38,9 +38,40 @@ class PagesLoader {
     private float pageRelativePartHeight;
     private float partRenderWidth;
     private float partRenderHeight;
+    private int gridRows;
+    private int gridCols;
+    /**
+     * Zoom level of the parts of the current load, see {@link #zoomLevel(float)}
+     */
+    private int level;
+    private float levelZoom;
+    /**
+     * True if the current pass requests motion parts, see {@link #isFastMotion(float, float)}
+     */
+    private boolean motion;
+    private final float motionVelocity;
     private final RectF thumbnailRect = new RectF(0, 0, 1, 1);
     private final int preloadOffset;
 
+    /**
+     * Visible area, without preload offset, and its center, in document coordinates
+     */
+    private final RectF viewport = new RectF();
+    private float viewportCenterX;
+    private float viewportCenterY;
+
+    /**
+     * Bounds of the page being loaded, in document coordinates
+     */
+    private final RectF pageBounds = new RectF();
+
+    private final RectF cellBounds = new RectF();
+
+    /**
+     * Parts outside of the viewport requested by the current load, see {@link PDFView#getPreloadPartsBudget()}
+     */
+    private int preloadedParts;
+
     private class Holder {
         int row;
         int col;
@@ -94,19 +125,32 @@ class PagesLoader {
     PagesLoader(PDFView pdfView) {
         this.pdfView = pdfView;
         this.preloadOffset = Util.dpToPx(pdfView.getContext(), PRELOAD_OFFSET);
+        this.motionVelocity = Util.dpToPx(pdfView.getContext(), Constants.MOTION_QUALITY_VELOCITY);
+    }
+
+    /**
+     * Power of two zoom level parts are rendered for at the given zoom,
+     * so that parts are reused until the zoom crosses a level
+     */
+    static int zoomLevel(float zoom) {
+        return (int) Math.ceil(Math.log(zoom / Constants.MAX_PART_UPSCALE) / Math.log(2));
     }
 
+    /**
+     * Grid of the page at the zoom of the current level, it only changes with the level
+     */
     private void getPageColsRows(GridSize grid, int pageIndex) {
-        SizeF size = pdfView.pdfFile.getPageSize(pageIndex);
-        float ratioX = 1f / size.getWidth();
-        float ratioY = 1f / size.getHeight();
-        final float partHeight = (Constants.PART_SIZE * ratioY) / pdfView.getZoom();
-        final float partWidth = (Constants.PART_SIZE * ratioX) / pdfView.getZoom();
+        float ratioX = 1f / pdfView.pdfFile.getPageWidth(pageIndex, 1);
+        float ratioY = 1f / pdfView.pdfFile.getPageHeight(pageIndex, 1);
+        final float partHeight = (Constants.PART_SIZE * ratioY) / levelZoom;
+        final float partWidth = (Constants.PART_SIZE * ratioX) / levelZoom;
         grid.rows = MathUtils.ceil(1f / partHeight);
         grid.cols = MathUtils.ceil(1f / partWidth);
     }
 
     private void calculatePartSize(GridSize grid) {
+        gridRows = grid.rows;
+        gridCols = grid.cols;
         pageRelativePartWidth = 1f / (float) grid.cols;
         pageRelativePartHeight = 1f / (float) grid.rows;
         partRenderWidth = Constants.PART_SIZE / pageRelativePartWidth;
@@ -147,13 +191,13 @@ class PagesLoader {
                     pageLastYOffset = fixedLastYOffset;
                 } else {
                     float pageOffset = pdfView.pdfFile.getPageOffset(page, pdfView.getZoom());
-                    SizeF pageSize = pdfView.pdfFile.getScaledPageSize(page, pdfView.getZoom());
+                    float pageLength = pdfView.pdfFile.getPageLength(page, pdfView.getZoom());
                     if (pdfView.isSwipeVertical()) {
                         pageLastXOffset = fixedLastXOffset;
-                        pageLastYOffset = pageOffset + pageSize.getHeight();
+                        pageLastYOffset = pageOffset + pageLength;
                     } else {
                         pageLastYOffset = fixedLastYOffset;
-                        pageLastXOffset = pageOffset + pageSize.getWidth();
+                        pageLastXOffset = pageOffset + pageLength;
                     }
                 }
             } else if (page == lastPage) {
@@ -172,26 +216,25 @@ class PagesLoader {
 
             } else {
                 float pageOffset = pdfView.pdfFile.getPageOffset(page, pdfView.getZoom());
-                SizeF pageSize = pdfView.pdfFile.getScaledPageSize(page, pdfView.getZoom());
+                float pageLength = pdfView.pdfFile.getPageLength(page, pdfView.getZoom());
                 if (pdfView.isSwipeVertical()) {
                     pageFirstXOffset = fixedFirstXOffset;
                     pageFirstYOffset = pageOffset;
 
                     pageLastXOffset = fixedLastXOffset;
-                    pageLastYOffset = pageOffset + pageSize.getHeight();
+                    pageLastYOffset = pageOffset + pageLength;
                 } else {
                     pageFirstXOffset = pageOffset;
                     pageFirstYOffset = fixedFirstYOffset;
 
-                    pageLastXOffset = pageOffset + pageSize.getWidth();
+                    pageLastXOffset = pageOffset + pageLength;
                     pageLastYOffset = fixedLastYOffset;
                 }
             }
 
             getPageColsRows(range.gridSize, range.page); // get the page's grid size that rows and cols
-            SizeF scaledPageSize = pdfView.pdfFile.getScaledPageSize(range.page, pdfView.getZoom());
-            float rowHeight = scaledPageSize.getHeight() / range.gridSize.rows;
-            float colWidth = scaledPageSize.getWidth() / range.gridSize.cols;
+            float rowHeight = pdfView.pdfFile.getPageHeight(range.page, pdfView.getZoom()) / range.gridSize.rows;
+            float colWidth = pdfView.pdfFile.getPageWidth(range.page, pdfView.getZoom()) / range.gridSize.cols;
 
 
             // get the page offset int the whole file
@@ -224,28 +267,51 @@ class PagesLoader {
         return renderRanges;
     }
 
-    private void loadVisible() {
+    /**
+     * Load the viewport at the given offsets, and the preload area around it
+     *
+     * @param offsetX        X offset of the document, as {@link PDFView#getCurrentXOffset()}
+     * @param offsetY        Y offset of the document, as {@link PDFView#getCurrentYOffset()}
+     * @param thumbnailsOnly request only the thumbnails, after the other tasks of the load
+     * @param motion         request motion parts, at a lower level and quality
+     * @return number of parts loaded
+     */
+    private int loadVisible(float offsetX, float offsetY, float velocityX, float velocityY,
+                            int partsBudget, boolean thumbnailsOnly, boolean motion) {
         int parts = 0;
-        float scaledPreloadOffset = preloadOffset;
-        float firstXOffset = -xOffset + scaledPreloadOffset;
-        float lastXOffset = -xOffset - pdfView.getWidth() - scaledPreloadOffset;
-        float firstYOffset = -yOffset + scaledPreloadOffset;
-        float lastYOffset = -yOffset - pdfView.getHeight() - scaledPreloadOffset;
+        this.motion = motion;
+        level = zoomLevel(pdfView.getZoom()) - (motion ? Constants.MOTION_QUALITY_LEVEL_DROP : 0);
+        levelZoom = (float) Math.pow(2, level);
+        xOffset = -MathUtils.max(offsetX, 0);
+        yOffset = -MathUtils.max(offsetY, 0);
+        float firstXOffset = -xOffset + preloadLength(-velocityX, pdfView.getWidth());
+        float lastXOffset = -xOffset - pdfView.getWidth() - preloadLength(velocityX, pdfView.getWidth());
+        float firstYOffset = -yOffset + preloadLength(-velocityY, pdfView.getHeight());
+        float lastYOffset = -yOffset - pdfView.getHeight() - preloadLength(velocityY, pdfView.getHeight());
 
         List<RenderRange> rangeList = getRenderRangeList(firstXOffset, firstYOffset, lastXOffset, lastYOffset);
 
+        viewport.set(-offsetX, -offsetY, -offsetX + pdfView.getWidth(), -offsetY + pdfView.getHeight());
+        viewportCenterX = viewport.centerX();
+        viewportCenterY = viewport.centerY();
+
         for (RenderRange range : rangeList) {
-            loadThumbnail(range.page);
+            calculatePageBounds(range.page);
+            loadThumbnail(range.page, !thumbnailsOnly && RectF.intersects(viewport, pageBounds));
+        }
+        if (thumbnailsOnly) {
+            return 0;
         }
 
         for (RenderRange range : rangeList) {
+            calculatePageBounds(range.page);
             calculatePartSize(range.gridSize);
-            parts += loadPage(range.page, range.leftTop.row, range.rightBottom.row, range.leftTop.col, range.rightBottom.col, CACHE_SIZE - parts);
-            if (parts >= CACHE_SIZE) {
+            parts += loadPage(range.page, range.leftTop.row, range.rightBottom.row, range.leftTop.col, range.rightBottom.col, partsBudget - parts);
+            if (parts >= partsBudget) {
                 break;
             }
         }
-
+        return parts;
     }
 
     private int loadPage(int page, int firstRow, int lastRow, int firstCol, int lastCol,
@@ -264,6 +330,22 @@ class PagesLoader {
         return loaded;
     }
 
+    /**
+     * Length to preload on one side of the viewport, it extends in the direction of travel
+     * and shrinks behind
+     *
+     * @param velocity     velocity towards that side
+     * @param screenLength size of the view on the axis
+     */
+    private float preloadLength(float velocity, int screenLength) {
+        float extension = Math.min(Math.abs(velocity) * Constants.PRELOAD_LOOKAHEAD_MS / 1000f,
+                screenLength * Constants.MAX_PRELOAD_SCREENS);
+        if (velocity > 0) {
+            return preloadOffset + extension;
+        }
+        return Math.max(preloadOffset - extension, 0);
+    }
+
     private boolean loadCell(int page, int row, int col, float pageRelativePartWidth, float pageRelativePartHeight) {
 
         float relX = pageRelativePartWidth * col;
@@ -284,10 +366,22 @@ class PagesLoader {
         RectF pageRelativeBounds = new RectF(relX, relY, relX + relWidth, relY + relHeight);
 
         if (renderWidth > 0 && renderHeight > 0) {
-            if (!pdfView.cacheManager.upPartIfContained(page, pageRelativeBounds, cacheOrder)) {
+            cellBounds.set(pageBounds.left + pageRelativeBounds.left * pageBounds.width(),
+                    pageBounds.top + pageRelativeBounds.top * pageBounds.height(),
+                    pageBounds.left + pageRelativeBounds.right * pageBounds.width(),
+                    pageBounds.top + pageRelativeBounds.bottom * pageBounds.height());
+            boolean visible = RectF.intersects(viewport, cellBounds);
+            if (!visible) {
+                if (preloadedParts >= pdfView.getPreloadPartsBudget()) {
+                    return false;
+                }
+                preloadedParts++;
+            }
+            if (!pdfView.cacheManager.upPartIfContained(page, row, col, gridRows, gridCols, motion, cacheOrder)) {
                 pdfView.renderingHandler.addRenderingTask(page, renderWidth, renderHeight,
-                        pageRelativeBounds, false, cacheOrder, pdfView.isBestQuality(),
-                        pdfView.isAnnotationRendering());
+                        pageRelativeBounds, false, cacheOrder, pdfView.isBestQuality() && !motion,
+                        pdfView.isAnnotationRendering() && !motion, row, col, gridRows, gridCols, level, motion,
+                        visible, distanceToViewportCenter(cellBounds));
             }
 
             cacheOrder++;
@@ -296,22 +390,72 @@ class PagesLoader {
         return false;
     }
 
-    private void loadThumbnail(int page) {
-        SizeF pageSize = pdfView.pdfFile.getPageSize(page);
-        float thumbnailWidth = pageSize.getWidth() * Constants.THUMBNAIL_RATIO;
-        float thumbnailHeight = pageSize.getHeight() * Constants.THUMBNAIL_RATIO;
-        if (!pdfView.cacheManager.containsThumbnail(page, thumbnailRect)) {
+    private void loadThumbnail(int page, boolean visible) {
+        float thumbnailWidth = pdfView.pdfFile.getPageWidth(page, Constants.THUMBNAIL_RATIO);
+        float thumbnailHeight = pdfView.pdfFile.getPageHeight(page, Constants.THUMBNAIL_RATIO);
+        if (!pdfView.cacheManager.containsThumbnail(page)) {
             pdfView.renderingHandler.addRenderingTask(page,
                     thumbnailWidth, thumbnailHeight, thumbnailRect,
-                    true, 0, pdfView.isBestQuality(), pdfView.isAnnotationRendering());
+                    true, 0, pdfView.isBestQuality(), pdfView.isAnnotationRendering(), 0, 0, 1, 1, level, false,
+                    visible, distanceToViewportCenter(pageBounds));
         }
     }
 
+    private void calculatePageBounds(int page) {
+        pdfView.pdfFile.getPageBounds(page, pdfView.getZoom(), pageBounds);
+    }
+
+    /**
+     * Distance between the center of the viewport and the closest point of the given bounds
+     */
+    private float distanceToViewportCenter(RectF bounds) {
+        float dx = Math.max(Math.max(bounds.left - viewportCenterX, viewportCenterX - bounds.right), 0);
+        float dy = Math.max(Math.max(bounds.top - viewportCenterY, viewportCenterY - bounds.bottom), 0);
+        return (float) Math.hypot(dx, dy);
+    }
+
     void loadPages() {
+        loadPages(CACHE_SIZE);
+    }
+
+    /**
+     * While an animation with a known destination runs, see {@link PDFView#getPrefetchTarget()},
+     * the landing viewport is loaded first and the pages scrolled over only get their thumbnails,
+     * so that their parts are cancelled.
+     * <p>
+     * While the document moves fast, motion parts are requested instead of the parts scrolled over.
+     * Once it stops, only the parts still visible or preloaded are requested at full quality.
+     *
+     * @param partsBudget maximum number of parts to request, capped by {@link Constants.Cache#CACHE_SIZE}
+     *                    and by the number of parts fitting in the cache
+     * @return true if motion parts were requested
+     */
+    boolean loadPages(int partsBudget) {
         cacheOrder = 1;
-        xOffset = -MathUtils.max(pdfView.getCurrentXOffset(), 0);
-        yOffset = -MathUtils.max(pdfView.getCurrentYOffset(), 0);
+        preloadedParts = 0;
+
+        int maxParts = pdfView.cacheManager.getMaxParts(pdfView.isBestQuality());
+        partsBudget = Math.min(MathUtils.max(partsBudget, CACHE_SIZE), maxParts);
+        float velocityX = pdfView.scrollVelocityTracker.getVelocityX();
+        float velocityY = pdfView.scrollVelocityTracker.getVelocityY();
+        boolean fastMotion = isFastMotion(velocityX, velocityY);
+        PointF target = pdfView.getPrefetchTarget();
+        if (target != null) {
+            // the document will stand still there, no need to preload ahead
+            int parts = loadVisible(target.x, target.y, 0, 0, partsBudget, false, false);
+            loadVisible(pdfView.getCurrentXOffset(), pdfView.getCurrentYOffset(), 0, 0,
+                    partsBudget - parts, !fastMotion, fastMotion);
+        } else {
+            loadVisible(pdfView.getCurrentXOffset(), pdfView.getCurrentYOffset(), velocityX, velocityY,
+                    partsBudget, false, fastMotion);
+        }
+        return fastMotion;
+    }
 
-        loadVisible();
+    /**
+     * @return true if the document moves faster than {@link Constants#MOTION_QUALITY_VELOCITY}
+     */
+    private boolean isFastMotion(float velocityX, float velocityY) {
+        return motionVelocity > 0 && Math.hypot(velocityX, velocityY) > motionVelocity;
     }
 }
@@ -18,22 +18,34 @@ package com.github.barteksc.pdfviewer;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.CancellationSignal;
 import android.util.Log;
 import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.Nullable;
 
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
-import com.github.barteksc.pdfviewer.util.ArrayUtils;
+import com.github.barteksc.pdfviewer.model.NativeHandleStats;
+import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.FitPolicy;
 import com.github.barteksc.pdfviewer.util.MapUtil;
 import com.github.barteksc.pdfviewer.util.PageSizeCalculator;
+import com.vivlio.android.pdfium.IoStats;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
+import com.vivlio.android.pdfium.ProgressiveSource;
 import com.vivlio.android.pdfium.TOCEntry;
 import com.vivlio.android.pdfium.util.Size;
 import com.vivlio.android.pdfium.util.SizeF;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 
 
 @SuppressWarnings("unused")
@@ -42,21 +54,52 @@ class PdfFile {
     private static final String TAG = "PdfFile";
 
     private static final Object lock = new Object();
+
+    /**
+     * Number of pages measured by a single native call, the lock is released between calls
+     */
+    static final int PAGE_SIZES_BATCH = 4096;
+
+    /**
+     * Number of page labels read while holding the document lock
+     */
+    private static final int LABELS_BATCH = 256;
     public PdfDocument pdfDocument;
     public PdfiumCore pdfiumCore;
     private int pagesCount = 0;
     /**
-     * Original page sizes
+     * Original page sizes, in points
      */
-    private final List<Size> originalPageSizes = new ArrayList<>();
+    private int[] originalPageWidths = new int[0];
+    private int[] originalPageHeights = new int[0];
     /**
-     * Scaled page sizes
+     * Scaled page sizes, stored as primitive arrays so that geometry lookups done
+     * every frame neither unbox nor allocate
      */
-    private final List<SizeF> pageSizes = new ArrayList<>();
+    private float[] pageWidths = new float[0];
+    private float[] pageHeights = new float[0];
     /**
      * Opened pages with indicator whether opening was successful
      */
     private final SparseBooleanArray openedPages = new SparseBooleanArray();
+    /**
+     * Successfully opened pages, least recently used first
+     */
+    private final LinkedHashMap<Integer, Boolean> openedPagesLru = new LinkedHashMap<>(32, 0.75f, true);
+    /**
+     * Pages in use by a render or a search, with their number of users. They are never closed
+     */
+    private final SparseIntArray pinnedPages = new SparseIntArray();
+    /**
+     * Number of pages closed to keep at most {@link Constants.Cache#MAX_OPEN_PAGES} open
+     */
+    private long evictedPages;
+    /**
+     * Called once the opened pages exceed {@link Constants.Cache#MAX_OPEN_PAGES}, until they are trimmed
+     */
+    @Nullable
+    private Runnable trimRequest;
+    private boolean trimRequested;
     /**
      * Page with maximum width
      */
@@ -93,13 +136,13 @@ class PdfFile {
      */
     private final boolean autoSpacing;
     /**
-     * Calculated offsets for pages
+     * Calculated offsets for pages, increasing with the page index
      */
-    private final List<Float> pageOffsets = new ArrayList<>();
+    private float[] pageOffsets = new float[0];
     /**
-     * Calculated auto spacing for pages
+     * Calculated auto spacing for pages, empty without auto spacing
      */
-    private final List<Float> pageSpacing = new ArrayList<>();
+    private float[] pageSpacing = new float[0];
     /**
      * Calculated document length (width or height, depending on swipe mode)
      */
@@ -117,8 +160,51 @@ class PdfFile {
      */
     private int[] originalUserPages;
 
+    /**
+     * Identity of the document across loads, null if it cannot be identified
+     */
+    private String fingerprint;
+
+    /**
+     * Pages whose size was read from the document, null once every page is measured.
+     * Other pages are laid out with the size of the first page until they are measured
+     */
+    @Nullable
+    private boolean[] measuredPages;
+    private int unmeasuredPagesCount;
+
+    /**
+     * View size of the current layout
+     */
+    private Size viewSize;
+
+    /**
+     * Metadata stored when the document was loaded before, null if there was none
+     */
+    @Nullable
+    private MetadataCache.Metadata cachedMetadata;
+
+    /**
+     * True if the stored metadata is missing or does not match the document
+     */
+    private boolean metadataStale;
+
+    /**
+     * Reads made by pdfium to open the document
+     */
+    private IoStats openIoStats;
+
+    /**
+     * Document pages whose data arrived, for a document still arriving from a
+     * {@link ProgressiveSource}, null once the whole document arrived.
+     * Pages are only opened once available
+     */
+    @Nullable
+    private volatile boolean[] availablePages;
+
     PdfFile(PdfiumCore pdfiumCore, PdfDocument pdfDocument, FitPolicy pageFitPolicy, Size viewSize, int[] originalUserPages,
-            boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage, int spaceTop, int spaceBottom) {
+            boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage, int spaceTop, int spaceBottom,
+            boolean lazyLayout, @Nullable MetadataCache metadataCache) {
         this.pdfiumCore = pdfiumCore;
         this.pdfDocument = pdfDocument;
         this.pageFitPolicy = pageFitPolicy;
@@ -129,30 +215,316 @@ class PdfFile {
         this.fitEachPage = fitEachPage;
         this.spacingTopPx = spaceTop;
         this.spacingBottomPx = spaceBottom;
-        setup(viewSize);
+        int documentPagesCount = pdfiumCore.getPageCount(pdfDocument);
+        fingerprint = DiskTileCache.fingerprint(pdfiumCore, pdfDocument, documentPagesCount);
+        if (metadataCache != null && fingerprint != null) {
+            cachedMetadata = metadataCache.get(fingerprint, pdfiumCore.getDpi(), documentPagesCount);
+            if (cachedMetadata != null && !matchesDocument(cachedMetadata, documentPagesCount)) {
+                cachedMetadata = null;
+            }
+        }
+        metadataStale = cachedMetadata == null;
+        if (pdfDocument.getProgressiveSource() != null && !pdfiumCore.isDocumentComplete(pdfDocument)) {
+            availablePages = new boolean[documentPagesCount];
+        }
+        setup(viewSize, lazyLayout);
     }
 
-    private void setup(Size viewSize) {
+    /**
+     * The stored outline and page labels are served as they are, the fingerprint may not tell
+     * apart documents written again with the same identifier: a few properties cheap to read
+     * are compared first
+     *
+     * @return true if the page count, the size and the label of the first page are the stored ones
+     */
+    private boolean matchesDocument(MetadataCache.Metadata metadata, int documentPagesCount) {
+        if (metadata.getPageCount() != documentPagesCount) {
+            return false;
+        }
+        if (documentPagesCount == 0) {
+            return true;
+        }
+        int[] size = new int[2];
+        if (pdfiumCore.getPageSizes(pdfDocument, 0, 1, size) != 1
+                || size[0] != metadata.pageSizes[0] || size[1] != metadata.pageSizes[1]) {
+            return false;
+        }
+        String label = metadata.pageLabels != null ? metadata.pageLabels[0] : null;
+        return Objects.equals(label, pdfiumCore.getPageLabel(pdfDocument, 0));
+    }
+
+    /**
+     * @return identity of the document across loads, null if it cannot be identified
+     */
+    @Nullable
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param lazyLayout only measure the first page, see {@link #applyMeasuredPages(int, int, int[])}
+     */
+    private void setup(Size viewSize, boolean lazyLayout) {
         if (originalUserPages != null) {
             pagesCount = originalUserPages.length;
         } else {
             pagesCount = pdfiumCore.getPageCount(pdfDocument);
         }
 
-        for (int i = 0; i < pagesCount; i++) {
-            Size pageSize = pdfiumCore.getPageSize(pdfDocument, documentPage(i));
-            if (pageSize.getWidth() > originalMaxWidthPageSize.getWidth()) {
-                originalMaxWidthPageSize = pageSize;
+        originalPageWidths = new int[pagesCount];
+        originalPageHeights = new int[pagesCount];
+        if (cachedMetadata != null && setupFromMetadata(cachedMetadata)) {
+            recalculatePageSizes(viewSize);
+            return;
+        }
+        int measuredCount = lazyLayout ? Math.min(1, pagesCount) : pagesCount;
+        int[] sizes = new int[2 * Math.min(PAGE_SIZES_BATCH, measuredCount)];
+        for (int firstPage = 0; firstPage < measuredCount; firstPage += PAGE_SIZES_BATCH) {
+            int count = Math.min(PAGE_SIZES_BATCH, measuredCount - firstPage);
+            readPageSizes(firstPage, count, sizes);
+            for (int i = 0; i < count; i++) {
+                int page = firstPage + i;
+                int width = sizes[2 * i];
+                int height = sizes[2 * i + 1];
+                if (width > originalMaxWidthPageSize.getWidth()) {
+                    originalMaxWidthPageSize = new Size(width, height);
+                }
+                if (height > originalMaxHeightPageSize.getHeight()) {
+                    originalMaxHeightPageSize = new Size(width, height);
+                }
+                originalPageWidths[page] = width;
+                originalPageHeights[page] = height;
             }
-            if (pageSize.getHeight() > originalMaxHeightPageSize.getHeight()) {
-                originalMaxHeightPageSize = pageSize;
+        }
+        if (measuredCount < pagesCount) {
+            measuredPages = new boolean[pagesCount];
+            measuredPages[0] = true;
+            unmeasuredPagesCount = pagesCount - 1;
+            for (int i = 1; i < pagesCount; i++) {
+                originalPageWidths[i] = originalPageWidths[0];
+                originalPageHeights[i] = originalPageHeights[0];
             }
-            originalPageSizes.add(pageSize);
         }
 
         recalculatePageSizes(viewSize);
     }
 
+    /**
+     * Lay out the pages with their stored sizes, every page is measured again
+     * in the background to validate them, see {@link #applyMeasuredPages(int, int, int[])}
+     *
+     * @return false if the stored sizes do not cover the pages
+     */
+    private boolean setupFromMetadata(MetadataCache.Metadata metadata) {
+        int documentPagesCount = metadata.getPageCount();
+        for (int page = 0; page < pagesCount; page++) {
+            int docPage = documentPage(page);
+            if (docPage < 0 || docPage >= documentPagesCount) {
+                return false;
+            }
+            int width = metadata.pageSizes[2 * docPage];
+            int height = metadata.pageSizes[2 * docPage + 1];
+            if (width > originalMaxWidthPageSize.getWidth()) {
+                originalMaxWidthPageSize = new Size(width, height);
+            }
+            if (height > originalMaxHeightPageSize.getHeight()) {
+                originalMaxHeightPageSize = new Size(width, height);
+            }
+            originalPageWidths[page] = width;
+            originalPageHeights[page] = height;
+        }
+        if (pagesCount > 0) {
+            measuredPages = new boolean[pagesCount];
+            unmeasuredPagesCount = pagesCount;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the pages are laid out with the sizes stored by the {@link MetadataCache}
+     */
+    boolean isLayoutFromMetadata() {
+        return cachedMetadata != null;
+    }
+
+    /**
+     * @return true if the size of every page was read from the document
+     */
+    boolean isLayoutComplete() {
+        return measuredPages == null;
+    }
+
+    /**
+     * @return first page from the given one whose size is estimated, -1 if there is none
+     */
+    int nextUnmeasuredPage(int fromPage) {
+        boolean[] measured = measuredPages;
+        if (measured == null) {
+            return -1;
+        }
+        for (int page = Math.max(fromPage, 0); page < measured.length; page++) {
+            if (!measured[page]) {
+                return page;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read the sizes of count pages from the document, with a single native call unless the user
+     * reordered the pages. Can be called from any thread
+     *
+     * @param sizes receives the width and height of each page, at least 2 * count long
+     * @return false if the document is closed
+     */
+    boolean readPageSizes(int firstPage, int count, int[] sizes) {
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return false;
+            }
+            if (originalUserPages == null) {
+                int measured = pdfiumCore.getPageSizes(pdfDocument, firstPage, count, sizes);
+                Arrays.fill(sizes, 2 * measured, 2 * count, 0);
+                return true;
+            }
+            for (int i = 0; i < count; i++) {
+                Size size = pdfiumCore.getPageSize(pdfDocument, documentPage(firstPage + i));
+                sizes[2 * i] = size.getWidth();
+                sizes[2 * i + 1] = size.getHeight();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Extract the text of count pages, with a single native call unless the user reordered
+     * the pages or the document is still arriving. Progressive renders are given the native
+     * lock first, see {@link PdfiumCore#yieldToRenders()}. Can be called from any thread
+     *
+     * @param texts receives the text of each page, null if it cannot be read, at least count long
+     * @param waits  receives the nanoseconds spent yielding to renders, then waiting for the locks
+     * @return false if the document is closed
+     */
+    boolean readPagesText(int firstPage, int count, String[] texts, long[] waits) {
+        Arrays.fill(texts, 0, count, null);
+        // the document lock is not held meanwhile, renders open their pages with it
+        waits[0] = pdfiumCore.yieldToRenders();
+        long start = System.nanoTime();
+        synchronized (lock) {
+            long lockWait = System.nanoTime() - start;
+            if (pdfDocument == null) {
+                waits[1] = lockWait;
+                return false;
+            }
+            if (originalUserPages == null && !isProgressive()) {
+                waits[1] = lockWait + pdfiumCore.getPagesText(pdfDocument, firstPage, count, texts);
+                return true;
+            }
+            String[] text = new String[1];
+            for (int i = 0; i < count; i++) {
+                int docPage = documentPage(firstPage + i);
+                if (docPage >= 0 && isPageAvailable(firstPage + i)) {
+                    lockWait += pdfiumCore.getPagesText(pdfDocument, docPage, 1, text);
+                    texts[i] = text[0];
+                }
+            }
+            waits[1] = lockWait;
+            return true;
+        }
+    }
+
+    /**
+     * Measure the pages of the range whose size is estimated and apply their sizes, on the UI thread
+     *
+     * @return true if the layout changed
+     */
+    boolean measurePages(int firstPage, int lastPage) {
+        boolean[] measured = measuredPages;
+        firstPage = Math.max(firstPage, 0);
+        lastPage = Math.min(lastPage, pagesCount - 1);
+        int unmeasuredPage = nextUnmeasuredPage(firstPage);
+        if (measured == null || unmeasuredPage < 0 || unmeasuredPage > lastPage) {
+            return false;
+        }
+        for (int page = unmeasuredPage; page <= lastPage; page++) {
+            if (!isPageAvailable(page)) {
+                // measured by the PageAvailabilityTracker once it arrives
+                lastPage = page - 1;
+                break;
+            }
+        }
+        if (lastPage < unmeasuredPage) {
+            return false;
+        }
+        int count = lastPage - unmeasuredPage + 1;
+        int[] sizes = new int[2 * count];
+        return readPageSizes(unmeasuredPage, count, sizes)
+                && applyMeasuredPages(unmeasuredPage, count, sizes);
+    }
+
+    /**
+     * Replace the estimated sizes of the given pages by their measured sizes, on the UI thread.
+     * Offsets are only recomputed from the first page whose size changed, unless a page
+     * larger than all the measured ones changes the scale of the whole document.
+     *
+     * @param sizes width and height of each page, as filled by {@link #readPageSizes(int, int, int[])}
+     * @return true if the layout changed
+     */
+    boolean applyMeasuredPages(int firstPage, int count, int[] sizes) {
+        boolean[] measured = measuredPages;
+        if (measured == null) {
+            return false;
+        }
+        boolean maxChanged = false;
+        int firstChanged = -1;
+        int lastChanged = -1;
+        for (int i = 0; i < count && firstPage + i < pagesCount; i++) {
+            int page = firstPage + i;
+            if (measured[page]) {
+                continue;
+            }
+            measured[page] = true;
+            unmeasuredPagesCount--;
+            int width = sizes[2 * i];
+            int height = sizes[2 * i + 1];
+            if (width == originalPageWidths[page] && height == originalPageHeights[page]) {
+                continue;
+            }
+            originalPageWidths[page] = width;
+            originalPageHeights[page] = height;
+            metadataStale = true;
+            if (firstChanged < 0) {
+                firstChanged = page;
+            }
+            lastChanged = page;
+            if (width > originalMaxWidthPageSize.getWidth()) {
+                originalMaxWidthPageSize = new Size(width, height);
+                maxChanged = true;
+            }
+            if (height > originalMaxHeightPageSize.getHeight()) {
+                originalMaxHeightPageSize = new Size(width, height);
+                maxChanged = true;
+            }
+        }
+        if (unmeasuredPagesCount == 0) {
+            measuredPages = null;
+        }
+        if (firstChanged < 0) {
+            return false;
+        }
+        if (maxChanged) {
+            recalculatePageSizes(viewSize);
+        } else {
+            calculatePageSizes(pageWidths, pageHeights, firstChanged, lastChanged + 1);
+            if (autoSpacing) {
+                prepareAutoSpacing(pageSpacing, firstChanged, lastChanged + 1);
+            }
+            prepareDocLen();
+            preparePagesOffset(pageOffsets, firstChanged);
+        }
+        return true;
+    }
+
     PageSizeCalculator calculator;
 
     /**
@@ -162,55 +534,102 @@ class PdfFile {
      */
 
     public void recalculatePageSizes(Size viewSize) {
-        pageSizes.clear();
+        this.viewSize = viewSize;
         calculator =
                 new PageSizeCalculator(pageFitPolicy, originalMaxWidthPageSize,
                         originalMaxHeightPageSize, viewSize, fitEachPage);
         maxWidthPageSize = calculator.getOptimalMaxWidthPageSize();
         maxHeightPageSize = calculator.getOptimalMaxHeightPageSize();
 
-        for (Size size : originalPageSizes) {
-            pageSizes.add(calculator.calculate(size));
-        }
+        float[] widths = new float[pagesCount];
+        float[] heights = new float[pagesCount];
+        calculatePageSizes(widths, heights, 0, pagesCount);
+        pageWidths = widths;
+        pageHeights = heights;
         if (autoSpacing) {
-            prepareAutoSpacing(viewSize);
+            float[] spacings = new float[pagesCount];
+            prepareAutoSpacing(spacings, 0, pagesCount);
+            pageSpacing = spacings;
         }
         prepareDocLen();
-        preparePagesOffset();
+        float[] offsets = new float[pagesCount];
+        preparePagesOffset(offsets, 0);
+        pageOffsets = offsets;
+    }
+
+    private void calculatePageSizes(float[] widths, float[] heights, int fromPage, int toPage) {
+        for (int i = fromPage; i < toPage; i++) {
+            SizeF size = calculator.calculate(new Size(originalPageWidths[i], originalPageHeights[i]));
+            widths[i] = size.getWidth();
+            heights[i] = size.getHeight();
+        }
     }
 
     public int getPagesCount() {
         return pagesCount;
     }
 
+    private boolean isValidPage(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < pageWidths.length && documentPage(pageIndex) >= 0;
+    }
+
+    /**
+     * Prefer {@link #getPageWidth(int, float)} and {@link #getPageHeight(int, float)}
+     * on hot paths, this allocates a new size
+     */
     public SizeF getPageSize(int pageIndex) {
-        int docPage = documentPage(pageIndex);
-        if (docPage < 0) {
+        if (!isValidPage(pageIndex)) {
             return new SizeF(0, 0);
         }
-        if (!ArrayUtils.isValidIndex(pageSizes, pageIndex)) {
-            Log.d(TAG, "getPageSize: " + pageIndex);
-            return new SizeF(0, 0);
-        }
-        return pageSizes.get(pageIndex);
+        return new SizeF(pageWidths[pageIndex], pageHeights[pageIndex]);
     }
 
     Size getOriginalPageSize(int pageIndex) {
-        int docPage = documentPage(pageIndex);
-        if (docPage < 0) {
-            return new Size(0, 0);
-        }
-        if (!ArrayUtils.isValidIndex(pageSizes, pageIndex)) {
-            Log.d(TAG, "getOriginalPageSize: " + pageIndex);
+        if (!isValidPage(pageIndex)) {
             return new Size(0, 0);
         }
-        return originalPageSizes.get(pageIndex);
+        return new Size(originalPageWidths[pageIndex], originalPageHeights[pageIndex]);
     }
 
 
     public SizeF getScaledPageSize(int pageIndex, float zoom) {
-        SizeF size = getPageSize(pageIndex);
-        return new SizeF(size.getWidth() * zoom, size.getHeight() * zoom);
+        return new SizeF(getPageWidth(pageIndex, zoom), getPageHeight(pageIndex, zoom));
+    }
+
+    /**
+     * @return scaled page width, 0 if the page does not exist
+     */
+    public float getPageWidth(int pageIndex, float zoom) {
+        return isValidPage(pageIndex) ? pageWidths[pageIndex] * zoom : 0;
+    }
+
+    /**
+     * @return scaled page height, 0 if the page does not exist
+     */
+    public float getPageHeight(int pageIndex, float zoom) {
+        return isValidPage(pageIndex) ? pageHeights[pageIndex] * zoom : 0;
+    }
+
+    /**
+     * Write the scaled bounds of the page in the document into the given rect, without allocating
+     *
+     * @return the given rect, empty if the page does not exist
+     */
+    public RectF getPageBounds(int pageIndex, float zoom, RectF bounds) {
+        if (!isValidPage(pageIndex)) {
+            bounds.setEmpty();
+            return bounds;
+        }
+        float offset = getPageOffset(pageIndex, zoom);
+        float secondaryOffset = getSecondaryPageOffset(pageIndex, zoom);
+        float width = pageWidths[pageIndex] * zoom;
+        float height = pageHeights[pageIndex] * zoom;
+        if (isVertical) {
+            bounds.set(secondaryOffset, offset, secondaryOffset + width, offset + height);
+        } else {
+            bounds.set(offset, secondaryOffset, offset + width, secondaryOffset + height);
+        }
+        return bounds;
     }
 
     /**
@@ -230,45 +649,51 @@ class PdfFile {
         return getMaxPageSize().getHeight();
     }
 
-    private void prepareAutoSpacing(Size viewSize) {
-        pageSpacing.clear();
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float spacing = Math.max(0, isVertical ? viewSize.getHeight() - pageSize.getHeight() :
-                    viewSize.getWidth() - pageSize.getWidth());
-            if (i < getPagesCount() - 1) {
+    private void prepareAutoSpacing(float[] spacings, int fromPage, int toPage) {
+        for (int i = fromPage; i < toPage; i++) {
+            float spacing = Math.max(0, isVertical ? viewSize.getHeight() - pageHeights[i] :
+                    viewSize.getWidth() - pageWidths[i]);
+            if (i < pagesCount - 1) {
                 spacing += spacingPx;
             }
-            pageSpacing.add(spacing);
+            spacings[i] = spacing;
         }
     }
 
     private void prepareDocLen() {
         float length = 0;
-        for (SizeF pageSize : pageSizes) {
-            length += isVertical ? pageSize.getHeight() : pageSize.getWidth();
+        float[] lengths = isVertical ? pageHeights : pageWidths;
+        for (float pageLength : lengths) {
+            length += pageLength;
         }
-        int spacing = (spacingPx * (pageSizes.size() - 1)) + spacingTopPx + spacingBottomPx;
+        int spacing = (spacingPx * (lengths.length - 1)) + spacingTopPx + spacingBottomPx;
         documentLength = length + spacing;
     }
 
-    private void preparePagesOffset() {
-        pageOffsets.clear();
+    /**
+     * Compute the offsets of the pages from the given one, those before it are unchanged
+     */
+    private void preparePagesOffset(float[] offsets, int fromPage) {
+        float[] lengths = isVertical ? pageHeights : pageWidths;
         float offset = spacingTopPx;
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float size = isVertical ? pageSize.getHeight() : pageSize.getWidth();
+        if (fromPage > 0) {
+            // end of the previous page, followed by its spacing
+            offset = offsets[fromPage - 1] + lengths[fromPage - 1]
+                    + (autoSpacing ? pageSpacing[fromPage - 1] / 2f : spacingPx);
+        }
+        for (int i = fromPage; i < pagesCount; i++) {
+            float size = lengths[i];
             if (autoSpacing) {
-                offset += pageSpacing.get(i) / 2f;
+                offset += pageSpacing[i] / 2f;
                 if (i == 0) {
                     offset -= spacingPx / 2f;
-                } else if (i == getPagesCount() - 1) {
+                } else if (i == pagesCount - 1) {
                     offset += spacingPx / 2f;
                 }
-                pageOffsets.add(offset);
-                offset += size + pageSpacing.get(i) / 2f;
+                offsets[i] = offset;
+                offset += size + pageSpacing[i] / 2f;
             } else {
-                pageOffsets.add(offset);
+                offsets[i] = offset;
                 offset += size + spacingPx;
             }
         }
@@ -282,12 +707,11 @@ class PdfFile {
      * Get the page's height if swiping vertical, or width if swiping horizontal.
      */
     public float getPageLength(int pageIndex, float zoom) {
-        SizeF size = getPageSize(pageIndex);
-        return (isVertical ? size.getHeight() : size.getWidth()) * zoom;
+        return isVertical ? getPageHeight(pageIndex, zoom) : getPageWidth(pageIndex, zoom);
     }
 
     public float getPageSpacing(int pageIndex, float zoom) {
-        float spacing = autoSpacing ? pageSpacing.get(pageIndex) : spacingPx;
+        float spacing = autoSpacing ? pageSpacing[pageIndex] : spacingPx;
         return spacing * zoom;
     }
 
@@ -299,33 +723,39 @@ class PdfFile {
         if (docPage < 0) {
             return 0;
         }
-        return pageOffsets.get(pageIndex) * zoom;
+        return pageOffsets[pageIndex] * zoom;
     }
 
     /**
      * Get secondary page offset, that is X for vertical scroll and Y for horizontal scroll
      */
     public float getSecondaryPageOffset(int pageIndex, float zoom) {
-        SizeF pageSize = getPageSize(pageIndex);
         if (isVertical) {
             float maxWidth = getMaxPageWidth();
-            return zoom * (maxWidth - pageSize.getWidth()) / 2; //x
+            return zoom * (maxWidth - getPageWidth(pageIndex, 1)) / 2; //x
         } else {
             float maxHeight = getMaxPageHeight();
-            return zoom * (maxHeight - pageSize.getHeight()) / 2; //y
+            return zoom * (maxHeight - getPageHeight(pageIndex, 1)) / 2; //y
         }
     }
 
+    /**
+     * Binary search of the last page starting before the offset, half of its spacing included
+     */
     public int getPageAtOffset(float offset, float zoom) {
-        int currentPage = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            float off = pageOffsets.get(i) * zoom - getPageSpacing(i, zoom) / 2f;
+        int low = 0;
+        int high = pageOffsets.length;
+        // page starts increase with the page index, find the first one at or after the offset
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            float off = pageOffsets[mid] * zoom - getPageSpacing(mid, zoom) / 2f;
             if (off >= offset) {
-                break;
+                high = mid;
+            } else {
+                low = mid + 1;
             }
-            currentPage++;
         }
-        return --currentPage >= 0 ? currentPage : 0;
+        return low - 1 >= 0 ? low - 1 : 0;
     }
 
     public long getLinkAtPos(int currentPage, float posX, float posY, SizeF size) {
@@ -341,7 +771,7 @@ class PdfFile {
 
     public long openPage(int pageIndex) throws PageRenderingException {
         int docPage = documentPage(pageIndex);
-        if (docPage < 0) {
+        if (docPage < 0 || !isPageAvailable(pageIndex)) {
             return 0L;
         }
 
@@ -350,12 +780,16 @@ class PdfFile {
                 try {
                     long pagePtr = pdfiumCore.openPage(pdfDocument, docPage);
                     openedPages.put(docPage, true);
+                    touchPage(docPage);
                     return pagePtr;
                 } catch (Exception e) {
                     openedPages.put(docPage, false);
                     throw new PageRenderingException(pageIndex, e);
                 }
             } else {
+                if (openedPages.get(docPage)) {
+                    touchPage(docPage);
+                }
                 return MapUtil.getOrDefault(pdfDocument.mNativePagesPtr, docPage, 0L);
             }
         }
@@ -381,10 +815,187 @@ class PdfFile {
                 long openTextPtr = pdfiumCore.openText(pagePtr);
                 pdfDocument.mNativeTextPtr.put(page, openTextPtr);
             }
+            touchPage(page);
         }
         return MapUtil.getOrDefault(pdfDocument.mNativeTextPtr, page, 0L);
     }
 
+    /**
+     * Keep the page and its text page open until {@link #unpinPage(int)}, pins are counted
+     */
+    public void pinPage(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        if (docPage < 0) {
+            return;
+        }
+        synchronized (lock) {
+            pinnedPages.put(docPage, pinnedPages.get(docPage) + 1);
+        }
+    }
+
+    public void unpinPage(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        if (docPage < 0) {
+            return;
+        }
+        synchronized (lock) {
+            int pins = pinnedPages.get(docPage) - 1;
+            if (pins > 0) {
+                pinnedPages.put(docPage, pins);
+            } else {
+                pinnedPages.delete(docPage);
+            }
+        }
+    }
+
+    void setTrimRequest(@Nullable Runnable trimRequest) {
+        synchronized (lock) {
+            this.trimRequest = trimRequest;
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    private void touchPage(int docPage) {
+        openedPagesLru.put(docPage, Boolean.TRUE);
+        if (openedPagesLru.size() > Constants.Cache.MAX_OPEN_PAGES && !trimRequested && trimRequest != null) {
+            trimRequested = true;
+            trimRequest.run();
+        }
+    }
+
+    /**
+     * Close the least recently used pages, with their text pages, until at most maxPages are open.
+     * Native pointers are read without the lock on the UI thread, so this must be called there.
+     * Pinned pages, pages from firstKeptPage to lastKeptPage and the page of keptTextPtr stay open.
+     */
+    void trimOpenedPages(int maxPages, int firstKeptPage, int lastKeptPage, long keptTextPtr) {
+        synchronized (lock) {
+            trimRequested = false;
+            if (pdfDocument == null || openedPagesLru.size() <= maxPages) {
+                return;
+            }
+            SparseBooleanArray keptPages = new SparseBooleanArray();
+            for (int page = Math.max(firstKeptPage, 0); page <= lastKeptPage && page < pagesCount; page++) {
+                keptPages.put(documentPage(page), true);
+            }
+            Iterator<Integer> iterator = openedPagesLru.keySet().iterator();
+            while (openedPagesLru.size() > maxPages && iterator.hasNext()) {
+                int docPage = iterator.next();
+                if (pinnedPages.get(docPage) > 0 || keptPages.get(docPage)
+                        || (keptTextPtr != 0L
+                        && MapUtil.getOrDefault(pdfDocument.mNativeTextPtr, docPage, 0L) == keptTextPtr)) {
+                    continue;
+                }
+                pdfiumCore.closePage(pdfDocument, docPage);
+                // opened again on next use
+                openedPages.delete(docPage);
+                iterator.remove();
+                evictedPages++;
+            }
+        }
+    }
+
+    /**
+     * @return true while the document arrives from a {@link ProgressiveSource}
+     */
+    boolean isProgressive() {
+        return availablePages != null;
+    }
+
+    /**
+     * @return true if the data of the page arrived, pages are always available unless {@link #isProgressive()}
+     */
+    boolean isPageAvailable(int pageIndex) {
+        boolean[] available = availablePages;
+        if (available == null) {
+            return true;
+        }
+        int docPage = documentPage(pageIndex);
+        return docPage >= 0 && docPage < available.length && available[docPage];
+    }
+
+    /**
+     * Check with pdfium whether the data of the page arrived, the source is told which data
+     * the page needs next. Called from the {@link PageAvailabilityTracker} thread
+     */
+    boolean checkPageAvailable(int pageIndex) {
+        synchronized (lock) {
+            boolean[] available = availablePages;
+            int docPage = documentPage(pageIndex);
+            if (available == null || docPage < 0 || docPage >= available.length) {
+                return true;
+            }
+            if (!available[docPage] && pdfDocument != null
+                    && pdfiumCore.isPageAvailable(pdfDocument, docPage)) {
+                available[docPage] = true;
+            }
+            return available[docPage];
+        }
+    }
+
+    /**
+     * Wait until more data of the document arrived, at most the given time
+     *
+     * @throws IOException if no more data will arrive
+     */
+    void waitForData(long timeoutMillis) throws IOException {
+        PdfDocument document = pdfDocument;
+        ProgressiveSource source = document != null ? document.getProgressiveSource() : null;
+        if (source != null) {
+            source.waitForData(timeoutMillis);
+        }
+    }
+
+    /**
+     * @return true once every byte of the document arrived, the outline and the page labels
+     * may be the last ones
+     */
+    boolean isDocumentComplete() {
+        synchronized (lock) {
+            return pdfDocument == null || pdfiumCore.isDocumentComplete(pdfDocument);
+        }
+    }
+
+    /**
+     * Every page is available from now on, on the UI thread
+     */
+    void setDocumentComplete() {
+        availablePages = null;
+    }
+
+    void setOpenIoStats(IoStats openIoStats) {
+        this.openIoStats = openIoStats;
+    }
+
+    IoStats getOpenIoStats() {
+        return openIoStats;
+    }
+
+    /**
+     * @return reads made by pdfium since the document was opened, null once it is closed
+     */
+    @Nullable
+    IoStats getIoStats() {
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            return pdfiumCore.getIoStats(pdfDocument);
+        }
+    }
+
+    NativeHandleStats getNativeHandleStats() {
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return new NativeHandleStats(0, 0, 0, evictedPages);
+            }
+            return new NativeHandleStats(pdfDocument.mNativePagesPtr.size(), pdfDocument.mNativeTextPtr.size(),
+                    pinnedPages.size(), evictedPages);
+        }
+    }
+
     public boolean pageHasError(int pageIndex) {
         int docPage = documentPage(pageIndex);
         return !openedPages.get(docPage, false);
@@ -396,6 +1007,19 @@ class PdfFile {
                 bounds.left, bounds.top, bounds.width(), bounds.height(), annotationRendering);
     }
 
+    /**
+     * Render progressively, giving up as soon as the signal is cancelled
+     *
+     * @return true if the bitmap was fully rendered
+     */
+    public boolean renderPageBitmap(Bitmap bitmap, int pageIndex, Rect bounds, boolean annotationRendering,
+                                    CancellationSignal cancellationSignal) {
+        int docPage = documentPage(pageIndex);
+        return pdfiumCore.renderPageBitmap(pdfDocument, bitmap, docPage,
+                bounds.left, bounds.top, bounds.width(), bounds.height(), annotationRendering,
+                cancellationSignal);
+    }
+
     public PdfDocument.Meta getMetaData() {
         if (pdfDocument == null) {
             return null;
@@ -414,9 +1038,97 @@ class PdfFile {
         if (pdfDocument == null) {
             return new ArrayList<>();
         }
+        if (cachedMetadata != null) {
+            return new ArrayList<>(cachedMetadata.tableOfContents);
+        }
         return pdfiumCore.getTableOfContentsNew(pdfDocument);
     }
 
+    /**
+     * @return label of the page, as defined by the document, null if it defines none
+     */
+    @Nullable
+    public String getPageLabel(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        if (docPage < 0) {
+            return null;
+        }
+        MetadataCache.Metadata metadata = cachedMetadata;
+        if (metadata != null) {
+            return metadata.pageLabels != null ? metadata.pageLabels[docPage] : null;
+        }
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            return pdfiumCore.getPageLabel(pdfDocument, docPage);
+        }
+    }
+
+    /**
+     * @return true if the metadata should be stored, once the layout is complete
+     */
+    boolean isMetadataStale() {
+        return metadataStale;
+    }
+
+    void setMetadataStale(boolean metadataStale) {
+        this.metadataStale = metadataStale;
+    }
+
+    /**
+     * Read the page sizes, page labels and table of contents of the whole document,
+     * a batch of pages at a time so that rendering is not blocked. Can be called from any thread
+     *
+     * @return null if the document was closed meanwhile
+     */
+    @Nullable
+    MetadataCache.Metadata collectMetadata() {
+        int pageCount;
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            pageCount = pdfiumCore.getPageCount(pdfDocument);
+        }
+        int[] pageSizes = new int[2 * pageCount];
+        int[] sizes = new int[2 * Math.min(PAGE_SIZES_BATCH, pageCount)];
+        for (int firstPage = 0; firstPage < pageCount; firstPage += PAGE_SIZES_BATCH) {
+            int count = Math.min(PAGE_SIZES_BATCH, pageCount - firstPage);
+            synchronized (lock) {
+                if (pdfDocument == null) {
+                    return null;
+                }
+                count = pdfiumCore.getPageSizes(pdfDocument, firstPage, count, sizes);
+            }
+            System.arraycopy(sizes, 0, pageSizes, 2 * firstPage, 2 * count);
+        }
+
+        String[] pageLabels = new String[pageCount];
+        boolean hasLabels = false;
+        for (int firstPage = 0; firstPage < pageCount; firstPage += LABELS_BATCH) {
+            synchronized (lock) {
+                if (pdfDocument == null) {
+                    return null;
+                }
+                for (int page = firstPage; page < Math.min(firstPage + LABELS_BATCH, pageCount); page++) {
+                    pageLabels[page] = pdfiumCore.getPageLabel(pdfDocument, page);
+                    hasLabels |= pageLabels[page] != null;
+                }
+            }
+        }
+
+        List<TOCEntry> tableOfContents;
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            tableOfContents = pdfiumCore.getTableOfContentsNew(pdfDocument);
+        }
+        return new MetadataCache.Metadata(pdfiumCore.getDpi(), pageSizes,
+                hasLabels ? pageLabels : null, tableOfContents);
+    }
+
     public List<PdfDocument.Link> getPageLinks(int pageIndex) {
         int docPage = documentPage(pageIndex);
 
@@ -430,11 +1142,17 @@ class PdfFile {
     }
 
     public void dispose() {
-        if (pdfiumCore != null && pdfDocument != null) {
-            pdfiumCore.closeDocument(pdfDocument);
+        synchronized (lock) {
+            // pages may be measured in the background until the document is closed
+            if (pdfiumCore != null && pdfDocument != null) {
+                pdfiumCore.closeDocument(pdfDocument);
+            }
+            trimRequest = null;
+            openedPagesLru.clear();
+            pinnedPages.clear();
+            pdfDocument = null;
         }
 
-        pdfDocument = null;
         originalUserPages = null;
     }
 
@@ -20,6 +20,7 @@ import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
@@ -27,11 +28,31 @@ import android.util.Log;
 
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
 import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.model.RenderQueueStats;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
- * A {@link Handler} that will process incoming {@link RenderingTask} messages
+ * A {@link Handler} that will process queued {@link RenderingTask}s
  * and alert {@link PDFView#onBitmapRendered(PagePart)} when the portion of the
  * PDF is ready to render.
+ * <p>
+ * Tasks are requested in batches, see {@link #beginBatch()} and {@link #endBatch()}.
+ * A task requested again while it is still queued or being rendered is kept as is,
+ * and only the queued tasks that were not requested by the last batch are cancelled.
+ * <p>
+ * Queued tasks are rendered by priority: tasks visible in the viewport before preloaded ones,
+ * then the closest to the center of the viewport first, see {@link TaskPriorityComparator}.
+ * <p>
+ * Pages are rendered progressively, so the task being rendered can be cancelled
+ * when the batch no longer requests it, or preempted by a visible task
+ * while it is only preloaded. A preempted task is queued again.
+ * <p>
+ * When the disk cache is enabled, parts are read from it instead of being rendered if possible.
  */
 class RenderingHandler extends Handler {
     /**
@@ -48,23 +69,164 @@ class RenderingHandler extends Handler {
     private Matrix renderMatrix = new Matrix();
     private boolean running = false;
 
+    /**
+     * Guards {@link #queuedTasks}, {@link #taskQueue}, {@link #inFlightTask} and the counters,
+     * tasks are requested from the UI thread and consumed on the rendering thread
+     */
+    private final Object queueLock = new Object();
+
+    private final Map<RenderingTask, RenderingTask> queuedTasks = new HashMap<>();
+
+    private final PriorityQueue<RenderingTask> taskQueue = new PriorityQueue<>(16, new TaskPriorityComparator());
+
+    private RenderingTask inFlightTask;
+
+    private int batch;
+
+    private long keptCount;
+    private long addedCount;
+    private long cancelledCount;
+    private long latePreloadCount;
+    private long visibleMissCount;
+
     RenderingHandler(Looper looper, PDFView pdfView) {
         super(looper);
         this.pdfView = pdfView;
     }
 
-    void addRenderingTask(int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
-        RenderingTask task = new RenderingTask(width, height, bounds, page, thumbnail, cacheOrder, bestQuality, annotationRendering);
-        Message msg = obtainMessage(MSG_RENDER_TASK, task);
-        sendMessage(msg);
+    /**
+     * Start a new batch of requests, tasks not requested again
+     * before {@link #endBatch()} will be cancelled
+     */
+    void beginBatch() {
+        synchronized (queueLock) {
+            batch++;
+        }
+    }
+
+    /**
+     * Cancel queued tasks that were not requested since {@link #beginBatch()}
+     * and reorder the kept ones by their updated priority
+     */
+    void endBatch() {
+        synchronized (queueLock) {
+            Iterator<RenderingTask> iterator = queuedTasks.values().iterator();
+            while (iterator.hasNext()) {
+                RenderingTask task = iterator.next();
+                if (task.batch != batch) {
+                    iterator.remove();
+                    cancelledCount++;
+                }
+            }
+            taskQueue.clear();
+            taskQueue.addAll(queuedTasks.values());
+            if (inFlightTask != null && !inFlightTask.cancellationSignal.isCanceled()) {
+                if (inFlightTask.batch != batch) {
+                    inFlightTask.cancellationSignal.cancel();
+                    cancelledCount++;
+                } else if (!inFlightTask.visible && !taskQueue.isEmpty() && taskQueue.peek().visible) {
+                    inFlightTask.preempted = true;
+                    inFlightTask.cancellationSignal.cancel();
+                }
+            }
+        }
+        scheduleNext();
+    }
+
+    /**
+     * Cancel all queued tasks and the one being rendered
+     */
+    void cancelAll() {
+        synchronized (queueLock) {
+            cancelledCount += queuedTasks.size();
+            queuedTasks.clear();
+            taskQueue.clear();
+            if (inFlightTask != null && !inFlightTask.cancellationSignal.isCanceled()) {
+                inFlightTask.preempted = false;
+                inFlightTask.cancellationSignal.cancel();
+                cancelledCount++;
+            }
+            removeMessages(MSG_RENDER_TASK);
+        }
+    }
+
+    /**
+     * Request a part, merged with an identical task if one is already queued or in flight
+     *
+     * @param motion   true for a motion part, see {@link PagePart#isMotion()}
+     * @param visible  true if the part is in the viewport, false if it is preloaded
+     * @param distance distance in pixels between the part and the center of the viewport
+     */
+    void addRenderingTask(int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering,
+                          int row, int col, int gridRows, int gridCols, int level, boolean motion, boolean visible, float distance) {
+        RenderingTask task = new RenderingTask(width, height, bounds, page, thumbnail, cacheOrder, bestQuality, annotationRendering,
+                row, col, gridRows, gridCols, level, motion);
+        synchronized (queueLock) {
+            RenderingTask existing = queuedTasks.get(task);
+            if (existing == null && task.equals(inFlightTask)
+                    && (inFlightTask.preempted || !inFlightTask.cancellationSignal.isCanceled())) {
+                // a preempted task is queued again once its render is abandoned
+                existing = inFlightTask;
+            }
+            if (existing != null) {
+                if (visible && !existing.visible) {
+                    latePreloadCount++;
+                }
+                // queue is reordered at the end of the batch
+                existing.batch = batch;
+                existing.cacheOrder = cacheOrder;
+                existing.visible = visible;
+                existing.distance = distance;
+                keptCount++;
+                return;
+            }
+            task.batch = batch;
+            task.visible = visible;
+            task.distance = distance;
+            queuedTasks.put(task, task);
+            taskQueue.add(task);
+            addedCount++;
+            if (visible) {
+                visibleMissCount++;
+            }
+        }
+    }
+
+    /**
+     * Post a message to render the next queued task, unless one is already pending
+     */
+    private void scheduleNext() {
+        synchronized (queueLock) {
+            if (!taskQueue.isEmpty() && !hasMessages(MSG_RENDER_TASK)) {
+                sendEmptyMessage(MSG_RENDER_TASK);
+            }
+        }
+    }
+
+    RenderQueueStats getStats() {
+        synchronized (queueLock) {
+            return new RenderQueueStats(keptCount, addedCount, cancelledCount, latePreloadCount, visibleMissCount);
+        }
     }
 
     @Override
     public void handleMessage(Message message) {
-        RenderingTask task = (RenderingTask) message.obj;
+        RenderingTask task;
+        synchronized (queueLock) {
+            task = taskQueue.poll();
+            if (task == null) {
+                return;
+            }
+            queuedTasks.remove(task);
+            inFlightTask = task;
+        }
         try {
             final PagePart part = proceed(task);
             if (part != null) {
+                synchronized (queueLock) {
+                    // rendered before the cancellation was noticed
+                    task.preempted = false;
+                }
                 if (running) {
                     pdfView.post(() -> pdfView.onBitmapRendered(part));
                 } else {
@@ -73,34 +235,81 @@ class RenderingHandler extends Handler {
             }
         } catch (final PageRenderingException ex) {
             pdfView.post(() -> pdfView.onPageError(ex));
+        } finally {
+            synchronized (queueLock) {
+                inFlightTask = null;
+                if (task.preempted && !queuedTasks.containsKey(task)) {
+                    RenderingTask retry = task.copy();
+                    queuedTasks.put(retry, retry);
+                    taskQueue.add(retry);
+                }
+            }
+            scheduleNext();
         }
     }
 
     private PagePart proceed(RenderingTask renderingTask) throws PageRenderingException {
         PdfFile pdfFile = pdfView.pdfFile;
-        pdfFile.openPage(renderingTask.page);
+        pdfFile.pinPage(renderingTask.page);
+        try {
+            return render(pdfFile, renderingTask);
+        } finally {
+            pdfFile.unpinPage(renderingTask.page);
+        }
+    }
 
+    private PagePart render(PdfFile pdfFile, RenderingTask renderingTask) throws PageRenderingException {
         int w = Math.round(renderingTask.width);
         int h = Math.round(renderingTask.height);
 
-        if (w == 0 || h == 0 || pdfFile.pageHasError(renderingTask.page)) {
+        if (w == 0 || h == 0) {
             return null;
         }
 
         Bitmap render;
         try {
-            render = Bitmap.createBitmap(w, h, renderingTask.bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
+            render = pdfView.bitmapPool.acquire(w, h, renderingTask.bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Cannot create bitmap", e);
             return null;
         }
-        calculateBounds(w, h, renderingTask.bounds);
+        DiskTileCache diskTileCache = pdfView.diskTileCache;
+        String tileName = null;
+        if (diskTileCache != null && pdfFile.getFingerprint() != null) {
+            tileName = DiskTileCache.tileName(pdfFile.getFingerprint(), pdfFile.documentPage(renderingTask.page),
+                    renderingTask.thumbnail, renderingTask.row, renderingTask.col,
+                    renderingTask.gridRows, renderingTask.gridCols,
+                    render.getConfig(), renderingTask.annotationRendering, w, h);
+        }
 
-        pdfFile.renderPageBitmap(render, renderingTask.page, roundedRenderBounds, renderingTask.annotationRendering);
+        if (tileName == null || !diskTileCache.get(tileName, render)) {
+            // the page is opened, under the pdfium lock, only when the disk tier misses
+            try {
+                pdfFile.openPage(renderingTask.page);
+            } catch (PageRenderingException e) {
+                pdfView.bitmapPool.release(render);
+                throw e;
+            }
+            if (pdfFile.pageHasError(renderingTask.page)) {
+                pdfView.bitmapPool.release(render);
+                return null;
+            }
+            calculateBounds(w, h, renderingTask.bounds);
+
+            if (!pdfFile.renderPageBitmap(render, renderingTask.page, roundedRenderBounds,
+                    renderingTask.annotationRendering, renderingTask.cancellationSignal)) {
+                pdfView.bitmapPool.release(render);
+                return null;
+            }
+            if (tileName != null && !renderingTask.motion) {
+                diskTileCache.put(tileName, render);
+            }
+        }
 
         return new PagePart(renderingTask.page, render,
                 renderingTask.bounds, renderingTask.thumbnail,
-                renderingTask.cacheOrder);
+                renderingTask.cacheOrder, renderingTask.row, renderingTask.col,
+                renderingTask.gridRows, renderingTask.gridCols, renderingTask.level, renderingTask.motion);
     }
 
     private void calculateBounds(int width, int height, RectF pageSliceBounds) {
@@ -137,7 +346,39 @@ class RenderingHandler extends Handler {
 
         boolean annotationRendering;
 
-        RenderingTask(float width, float height, RectF bounds, int page, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
+        int row, col, gridRows, gridCols;
+
+        /**
+         * Zoom level the part is rendered for, not part of its identity since the grid size already is
+         */
+        int level;
+
+        boolean motion;
+
+        /**
+         * True if the part is in the viewport, false if it is preloaded
+         */
+        boolean visible;
+
+        /**
+         * Distance in pixels between the part and the center of the viewport
+         */
+        float distance;
+
+        /**
+         * The last batch this task was requested in
+         */
+        int batch;
+
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+
+        /**
+         * True if the render was cancelled in favor of a visible task, to be queued again
+         */
+        boolean preempted;
+
+        RenderingTask(float width, float height, RectF bounds, int page, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering,
+                      int row, int col, int gridRows, int gridCols, int level, boolean motion) {
             this.page = page;
             this.width = width;
             this.height = height;
@@ -146,6 +387,74 @@ class RenderingHandler extends Handler {
             this.cacheOrder = cacheOrder;
             this.bestQuality = bestQuality;
             this.annotationRendering = annotationRendering;
+            this.row = row;
+            this.col = col;
+            this.gridRows = gridRows;
+            this.gridCols = gridCols;
+            this.level = level;
+            this.motion = motion;
+        }
+
+        /**
+         * @return an identical task with a fresh cancellation signal
+         */
+        RenderingTask copy() {
+            RenderingTask task = new RenderingTask(width, height, bounds, page, thumbnail, cacheOrder, bestQuality, annotationRendering,
+                    row, col, gridRows, gridCols, level, motion);
+            task.visible = visible;
+            task.distance = distance;
+            task.batch = batch;
+            return task;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RenderingTask)) {
+                return false;
+            }
+            RenderingTask task = (RenderingTask) obj;
+            return task.page == page
+                    && task.thumbnail == thumbnail
+                    && task.bestQuality == bestQuality
+                    && task.annotationRendering == annotationRendering
+                    && task.row == row
+                    && task.col == col
+                    && task.gridRows == gridRows
+                    && task.gridCols == gridCols
+                    && task.motion == motion;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = page;
+            result = 31 * result + (thumbnail ? 1 : 0);
+            result = 31 * result + row;
+            result = 31 * result + col;
+            result = 31 * result + gridRows;
+            result = 31 * result + gridCols;
+            result = 31 * result + (motion ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * Visible tasks first, then by distance to the center of the viewport.
+     * On equal distance, the thumbnail goes first since it covers the whole page at once.
+     */
+    private static class TaskPriorityComparator implements Comparator<RenderingTask> {
+        @Override
+        public int compare(RenderingTask task1, RenderingTask task2) {
+            if (task1.visible != task2.visible) {
+                return task1.visible ? -1 : 1;
+            }
+            int result = Float.compare(task1.distance, task2.distance);
+            if (result != 0) {
+                return result;
+            }
+            if (task1.thumbnail != task2.thumbnail) {
+                return task1.thumbnail ? -1 : 1;
+            }
+            return Integer.compare(task1.cacheOrder, task2.cacheOrder);
         }
     }
 }
@@ -0,0 +1,79 @@
+package com.github.barteksc.pdfviewer;
+
+import android.view.Choreographer;
+
+import com.github.barteksc.pdfviewer.util.Constants;
+
+/**
+ * Coalesces page loading requested while the user is drag-scrolling.
+ * Touch events arrive faster than the display refreshes, so instead of
+ * rebuilding the render queue on every event, parts entering the viewport
+ * are requested at most once every {@link #frameInterval} frames, with at most
+ * {@link #partsBudget} parts per request.
+ */
+class ScrollLoadScheduler implements Choreographer.FrameCallback {
+
+    private final PDFView pdfView;
+
+    /**
+     * Maximum number of parts requested by a single scroll-time load
+     */
+    private int partsBudget = Constants.Cache.SCROLL_PARTS_BUDGET;
+
+    /**
+     * Number of display frames between two scroll-time loads, 1 means every frame
+     */
+    private int frameInterval = Constants.SCROLL_LOAD_FRAME_INTERVAL;
+
+    private boolean scheduled = false;
+
+    private int elapsedFrames = 0;
+
+    ScrollLoadScheduler(PDFView pdfView) {
+        this.pdfView = pdfView;
+    }
+
+    void setPartsBudget(int partsBudget) {
+        this.partsBudget = Math.max(1, partsBudget);
+    }
+
+    void setFrameInterval(int frameInterval) {
+        this.frameInterval = Math.max(1, frameInterval);
+    }
+
+    /**
+     * Request a load on one of the next frames, multiple requests
+     * issued before that frame are merged into a single load
+     */
+    void request() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Drop a pending request, used when a full load is done anyway (e.g. on scroll end)
+     */
+    void cancel() {
+        if (scheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            scheduled = false;
+        }
+        elapsedFrames = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (++elapsedFrames < frameInterval) {
+            Choreographer.getInstance().postFrameCallback(this);
+            return;
+        }
+        scheduled = false;
+        elapsedFrames = 0;
+        if (!pdfView.isRecycled()) {
+            pdfView.loadPageByOffset(partsBudget);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.barteksc.pdfviewer;
+
+import android.os.SystemClock;
+
+/**
+ * Estimates the scroll velocity from the offsets applied by {@link PDFView#moveTo(float, float, boolean)},
+ * whatever moves the document: drag, fling or animation.
+ * <p>
+ * Velocities are in document pixels per second, positive towards the end of the document.
+ * They are smoothed over the last moves and fall back to zero when the document
+ * stops moving or when the zoom changes.
+ */
+class ScrollVelocityTracker {
+
+    /**
+     * Velocity is considered null when the document did not move for this long
+     */
+    private static final long IDLE_MS = 100;
+
+    /**
+     * Time constant of the smoothing, a move weighs dt / (dt + SMOOTHING_MS)
+     */
+    private static final float SMOOTHING_MS = 50;
+
+    private float velocityX;
+    private float velocityY;
+
+    private float lastOffsetX;
+    private float lastOffsetY;
+    private float lastZoom;
+    private long lastMoveTime = -1;
+
+    void onMove(float offsetX, float offsetY, float zoom) {
+        long now = SystemClock.uptimeMillis();
+        if (lastMoveTime < 0 || zoom != lastZoom || now - lastMoveTime > IDLE_MS) {
+            velocityX = 0;
+            velocityY = 0;
+        } else if (now > lastMoveTime) {
+            long dt = now - lastMoveTime;
+            float weight = dt / (dt + SMOOTHING_MS);
+            // offsets decrease when moving towards the end of the document
+            velocityX += weight * ((lastOffsetX - offsetX) * 1000f / dt - velocityX);
+            velocityY += weight * ((lastOffsetY - offsetY) * 1000f / dt - velocityY);
+        } else {
+            // several moves in the same millisecond, keep the first sample time
+            return;
+        }
+        lastOffsetX = offsetX;
+        lastOffsetY = offsetY;
+        lastZoom = zoom;
+        lastMoveTime = now;
+    }
+
+    float getVelocityX() {
+        return isIdle() ? 0 : velocityX;
+    }
+
+    float getVelocityY() {
+        return isIdle() ? 0 : velocityY;
+    }
+
+    void reset() {
+        velocityX = 0;
+        velocityY = 0;
+        lastMoveTime = -1;
+    }
+
+    private boolean isIdle() {
+        return lastMoveTime < 0 || SystemClock.uptimeMillis() - lastMoveTime > IDLE_MS;
+    }
+}
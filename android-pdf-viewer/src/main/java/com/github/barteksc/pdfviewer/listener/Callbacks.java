@@ -20,6 +20,7 @@ import android.view.MotionEvent;
 
 import com.github.barteksc.pdfviewer.link.LinkHandler;
 import com.github.barteksc.pdfviewer.model.LinkTapEvent;
+import com.github.barteksc.pdfviewer.model.LoadStage;
 
 public class Callbacks {
 
@@ -43,6 +44,16 @@ public class Callbacks {
      */
     private OnRenderListener onRenderListener;
 
+    /**
+     * Call back object to call when a stage of the document load ends
+     */
+    private OnLoadStageListener onLoadStageListener;
+
+    /**
+     * Call back object to call when the data of a page arrived
+     */
+    private OnPageReadyListener onPageReadyListener;
+
     /**
      * Call back object to call when the page has changed
      */
@@ -140,6 +151,32 @@ public class Callbacks {
         }
     }
 
+    public void setOnLoadStage(OnLoadStageListener onLoadStageListener) {
+        this.onLoadStageListener = onLoadStageListener;
+    }
+
+    public void callOnLoadStage(LoadStage stage, long durationMs) {
+        if (onLoadStageListener != null) {
+            onLoadStageListener.onLoadStage(stage, durationMs);
+        }
+    }
+
+    public void setOnPageReady(OnPageReadyListener onPageReadyListener) {
+        this.onPageReadyListener = onPageReadyListener;
+    }
+
+    public void callOnPageReady(int page) {
+        if (onPageReadyListener != null) {
+            onPageReadyListener.onPageReady(page);
+        }
+    }
+
+    public void callOnDocumentComplete() {
+        if (onPageReadyListener != null) {
+            onPageReadyListener.onDocumentComplete();
+        }
+    }
+
     public void setOnPageChange(OnPageChangeListener onPageChangeListener) {
         this.onPageChangeListener = onPageChangeListener;
     }
@@ -0,0 +1,16 @@
+package com.github.barteksc.pdfviewer.listener;
+
+import com.github.barteksc.pdfviewer.model.LoadStage;
+
+/**
+ * Implement this interface to receive the duration of each stage of a document load,
+ * on the UI thread. Stages of a cancelled load are not reported.
+ */
+public interface OnLoadStageListener {
+
+    /**
+     * @param stage      the stage that ended
+     * @param durationMs time spent in the stage, in milliseconds
+     */
+    void onLoadStage(LoadStage stage, long durationMs);
+}
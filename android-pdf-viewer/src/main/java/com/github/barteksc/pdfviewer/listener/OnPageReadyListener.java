@@ -0,0 +1,21 @@
+package com.github.barteksc.pdfviewer.listener;
+
+/**
+ * Implement this interface to know when the data of a page arrived, for documents loaded from a
+ * {@link com.github.barteksc.pdfviewer.source.ProgressiveDocumentSource}. Called on the UI thread,
+ * once per page, when the page is laid out with its size and rendered. Pages which were not reported
+ * are drawn empty until they are.
+ */
+public interface OnPageReadyListener {
+
+    /**
+     * @param page index of the page in the view
+     */
+    void onPageReady(int page);
+
+    /**
+     * Called once the whole document arrived, after the last page was reported
+     */
+    default void onDocumentComplete() {
+    }
+}
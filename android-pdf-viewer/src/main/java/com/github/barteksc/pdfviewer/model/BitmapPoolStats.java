@@ -0,0 +1,70 @@
+package com.github.barteksc.pdfviewer.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the bitmap pool used to render parts and thumbnails
+ */
+public class BitmapPoolStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long pooledBytes;
+    private final long maxBytes;
+
+    public BitmapPoolStats(long hits, long misses, long evictions, long pooledBytes, long maxBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.pooledBytes = pooledBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return number of bitmaps reused from the pool
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of bitmaps that had to be allocated
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of pooled bitmaps recycled to respect the byte cap
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return bytes currently held by the pool
+     */
+    public long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * @return byte cap of the pool
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BitmapPoolStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", pooledBytes=" + pooledBytes +
+                ", maxBytes=" + maxBytes +
+                '}';
+    }
+}
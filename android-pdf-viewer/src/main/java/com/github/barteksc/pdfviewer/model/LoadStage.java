@@ -0,0 +1,29 @@
+package com.github.barteksc.pdfviewer.model;
+
+/**
+ * Stages of a document load, reported with their duration by
+ * {@link com.github.barteksc.pdfviewer.listener.OnLoadStageListener}
+ */
+public enum LoadStage {
+
+    /**
+     * Opening the document with pdfium
+     */
+    OPEN,
+
+    /**
+     * Measuring the first page and laying out the others with its size,
+     * or with the sizes stored by the metadata cache
+     */
+    FIRST_PAGE_GEOMETRY,
+
+    /**
+     * Rendering the thumbnail of the default page, while the remaining layout is done
+     */
+    FIRST_TILE,
+
+    /**
+     * Measuring the remaining pages. With a lazy layout this ends after the document is displayed
+     */
+    REMAINING_LAYOUT
+}
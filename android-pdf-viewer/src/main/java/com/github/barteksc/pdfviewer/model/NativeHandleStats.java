@@ -0,0 +1,69 @@
+package com.github.barteksc.pdfviewer.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the native pdfium handles held by the document. Pages and their text pages
+ * are closed once more than {@link com.github.barteksc.pdfviewer.util.Constants.Cache#MAX_OPEN_PAGES}
+ * are open, least recently used first, unless they are in use.
+ */
+public class NativeHandleStats {
+
+    private final int openPages;
+    private final int openTextPages;
+    private final int pinnedPages;
+    private final long evictedPages;
+
+    public NativeHandleStats(int openPages, int openTextPages, int pinnedPages, long evictedPages) {
+        this.openPages = openPages;
+        this.openTextPages = openTextPages;
+        this.pinnedPages = pinnedPages;
+        this.evictedPages = evictedPages;
+    }
+
+    /**
+     * @return number of pages currently open
+     */
+    public int getOpenPages() {
+        return openPages;
+    }
+
+    /**
+     * @return number of text pages currently open
+     */
+    public int getOpenTextPages() {
+        return openTextPages;
+    }
+
+    /**
+     * @return number of pages in use by a render or a search
+     */
+    public int getPinnedPages() {
+        return pinnedPages;
+    }
+
+    /**
+     * @return number of pages closed since the document was loaded
+     */
+    public long getEvictedPages() {
+        return evictedPages;
+    }
+
+    /**
+     * @return number of native handles currently open, pages and text pages
+     */
+    public int getHandleCount() {
+        return openPages + openTextPages;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "NativeHandleStats{" +
+                "openPages=" + openPages +
+                ", openTextPages=" + openTextPages +
+                ", pinnedPages=" + pinnedPages +
+                ", evictedPages=" + evictedPages +
+                '}';
+    }
+}
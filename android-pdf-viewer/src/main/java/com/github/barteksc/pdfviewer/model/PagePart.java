@@ -18,6 +18,15 @@ package com.github.barteksc.pdfviewer.model;
 import android.graphics.Bitmap;
 import android.graphics.RectF;
 
+/**
+ * A rendered part of a page. Parts are identified by their page and their cell
+ * in the grid the page was split into, the grid size identifying the zoom level
+ * the part was rendered for. Thumbnails are a single cell grid.
+ * <p>
+ * Zoom levels are powers of two, parts of level n are rendered for a zoom of 2^n.
+ * Motion parts are rendered at a lower level and quality while the document moves fast,
+ * they are distinct from the parts of the same cell rendered at rest.
+ */
 public class PagePart {
 
     private int page;
@@ -30,13 +39,39 @@ public class PagePart {
 
     private int cacheOrder;
 
+    private final int row;
+
+    private final int col;
+
+    private final int gridRows;
+
+    private final int gridCols;
+
+    private final int level;
+
+    private final boolean motion;
+
+    /**
+     * Part of a single cell grid, rendered at rest for a zoom of 1
+     */
     public PagePart(int page, Bitmap renderedBitmap, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder) {
+        this(page, renderedBitmap, pageRelativeBounds, thumbnail, cacheOrder, 0, 0, 1, 1, 0, false);
+    }
+
+    public PagePart(int page, Bitmap renderedBitmap, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder,
+                    int row, int col, int gridRows, int gridCols, int level, boolean motion) {
         super();
         this.page = page;
         this.renderedBitmap = renderedBitmap;
         this.pageRelativeBounds = pageRelativeBounds;
         this.thumbnail = thumbnail;
         this.cacheOrder = cacheOrder;
+        this.row = row;
+        this.col = col;
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.level = level;
+        this.motion = motion;
     }
 
     public int getCacheOrder() {
@@ -59,6 +94,30 @@ public class PagePart {
         return thumbnail;
     }
 
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getGridRows() {
+        return gridRows;
+    }
+
+    public int getGridCols() {
+        return gridCols;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isMotion() {
+        return motion;
+    }
+
     public void setCacheOrder(int cacheOrder) {
         this.cacheOrder = cacheOrder;
     }
@@ -70,11 +129,25 @@ public class PagePart {
         }
 
         PagePart part = (PagePart) obj;
-        return part.getPage() == page
-                && part.getPageRelativeBounds().left == pageRelativeBounds.left
-                && part.getPageRelativeBounds().right == pageRelativeBounds.right
-                && part.getPageRelativeBounds().top == pageRelativeBounds.top
-                && part.getPageRelativeBounds().bottom == pageRelativeBounds.bottom;
+        return part.page == page
+                && part.thumbnail == thumbnail
+                && part.row == row
+                && part.col == col
+                && part.gridRows == gridRows
+                && part.gridCols == gridCols
+                && part.motion == motion;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = page;
+        result = 31 * result + (thumbnail ? 1 : 0);
+        result = 31 * result + row;
+        result = 31 * result + col;
+        result = 31 * result + gridRows;
+        result = 31 * result + gridCols;
+        result = 31 * result + (motion ? 1 : 0);
+        return result;
     }
 
 }
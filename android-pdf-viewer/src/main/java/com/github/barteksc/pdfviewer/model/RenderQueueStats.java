@@ -0,0 +1,72 @@
+package com.github.barteksc.pdfviewer.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the render queue counters, accumulated since the document was loaded.
+ * Each call to {@link com.github.barteksc.pdfviewer.PDFView#loadPages()} diffs the parts
+ * it needs against the queued and in-flight rendering tasks.
+ */
+public class RenderQueueStats {
+
+    private final long kept;
+    private final long added;
+    private final long cancelled;
+    private final long latePreloads;
+    private final long visibleMisses;
+
+    public RenderQueueStats(long kept, long added, long cancelled, long latePreloads, long visibleMisses) {
+        this.kept = kept;
+        this.added = added;
+        this.cancelled = cancelled;
+        this.latePreloads = latePreloads;
+        this.visibleMisses = visibleMisses;
+    }
+
+    /**
+     * @return number of requested tasks that were already queued or in flight
+     */
+    public long getKept() {
+        return kept;
+    }
+
+    /**
+     * @return number of tasks newly queued
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * @return number of queued tasks dropped because they were no longer requested
+     */
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return number of preloaded tasks that became visible before they were rendered
+     */
+    public long getLatePreloads() {
+        return latePreloads;
+    }
+
+    /**
+     * @return number of tasks first requested while already visible, without being preloaded
+     */
+    public long getVisibleMisses() {
+        return visibleMisses;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "RenderQueueStats{" +
+                "kept=" + kept +
+                ", added=" + added +
+                ", cancelled=" + cancelled +
+                ", latePreloads=" + latePreloads +
+                ", visibleMisses=" + visibleMisses +
+                '}';
+    }
+}
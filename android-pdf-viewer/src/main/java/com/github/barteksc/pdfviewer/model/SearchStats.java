@@ -0,0 +1,102 @@
+package com.github.barteksc.pdfviewer.model;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the progress of a search. Page text is extracted in batches of
+ * {@link com.github.barteksc.pdfviewer.util.Constants.Search#TEXT_BATCH_SIZE} pages,
+ * each batch first yields to the renders in progress, then waits for the locks of the document.
+ */
+public class SearchStats {
+
+    private final int pagesSearched;
+    private final int pageCount;
+    private final int matchedPages;
+    private final long durationMs;
+    private final float lockWaitP95Ms;
+    private final float renderYieldP95Ms;
+    private final boolean finished;
+
+    public SearchStats(int pagesSearched, int pageCount, int matchedPages, long durationMs,
+                       float lockWaitP95Ms, float renderYieldP95Ms, boolean finished) {
+        this.pagesSearched = pagesSearched;
+        this.pageCount = pageCount;
+        this.matchedPages = matchedPages;
+        this.durationMs = durationMs;
+        this.lockWaitP95Ms = lockWaitP95Ms;
+        this.renderYieldP95Ms = renderYieldP95Ms;
+        this.finished = finished;
+    }
+
+    /**
+     * @return number of pages whose text was extracted
+     */
+    public int getPagesSearched() {
+        return pagesSearched;
+    }
+
+    /**
+     * @return number of pages of the document
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return number of pages with at least one match
+     */
+    public int getMatchedPages() {
+        return matchedPages;
+    }
+
+    /**
+     * @return time since the search started, until it finished
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return pages searched per second
+     */
+    public float getPagesPerSecond() {
+        return durationMs > 0 ? pagesSearched * 1000f / durationMs : 0;
+    }
+
+    /**
+     * @return 95th percentile of the time a batch waited to acquire the document and native locks,
+     * in milliseconds, the time yielded to renders beforehand excluded
+     */
+    public float getLockWaitP95Ms() {
+        return lockWaitP95Ms;
+    }
+
+    /**
+     * @return 95th percentile of the time a batch yielded to renders in progress before taking
+     * the locks, in milliseconds
+     */
+    public float getRenderYieldP95Ms() {
+        return renderYieldP95Ms;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SearchStats{" +
+                "pagesSearched=" + pagesSearched +
+                ", pageCount=" + pageCount +
+                ", matchedPages=" + matchedPages +
+                ", durationMs=" + durationMs +
+                ", pagesPerSecond=" + String.format(Locale.ROOT, "%.1f", getPagesPerSecond()) +
+                ", lockWaitP95Ms=" + String.format(Locale.ROOT, "%.2f", lockWaitP95Ms) +
+                ", renderYieldP95Ms=" + String.format(Locale.ROOT, "%.2f", renderYieldP95Ms) +
+                ", finished=" + finished +
+                '}';
+    }
+}
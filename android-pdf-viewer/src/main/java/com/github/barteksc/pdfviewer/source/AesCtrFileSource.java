@@ -0,0 +1,114 @@
+package com.github.barteksc.pdfviewer.source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Document stored in a file encrypted with AES in counter mode, as written by an
+ * {@code AES/CTR/NoPadding} cipher from the given key and initial counter block.
+ * <p>
+ * Only the blocks read by pdfium are decrypted: the counter of any offset is computed
+ * from the initial one, so each read starts the cipher where it begins.
+ */
+public class AesCtrFileSource implements SeekableDocumentSource, Closeable {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final SecretKeySpec key;
+    private final byte[] iv;
+
+    private FileChannel channel;
+    private Cipher cipher;
+    private ByteBuffer encrypted;
+
+    /**
+     * @param key 16, 24 or 32 bytes AES key
+     * @param iv  16 bytes initial counter block
+     */
+    public AesCtrFileSource(File file, byte[] key, byte[] iv) {
+        if (iv.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("Initial counter block must be " + BLOCK_SIZE + " bytes");
+        }
+        this.file = file;
+        this.key = new SecretKeySpec(key, "AES");
+        this.iv = iv.clone();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return open().size();
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst) throws IOException {
+        FileChannel channel = open();
+        if (encrypted == null) {
+            encrypted = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        encrypted.clear();
+        encrypted.limit(Math.min(dst.remaining(), BUFFER_SIZE));
+        int count = channel.read(encrypted, position);
+        if (count <= 0) {
+            return -1;
+        }
+        encrypted.flip();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counterAt(position / BLOCK_SIZE)));
+            int skip = (int) (position % BLOCK_SIZE);
+            if (skip > 0) {
+                // the key stream of the first block before the position is discarded
+                cipher.update(new byte[skip]);
+            }
+            return cipher.doFinal(encrypted, dst);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot decrypt " + file, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        encrypted = null;
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            try {
+                cipher = Cipher.getInstance("AES/CTR/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES/CTR is not available", e);
+            }
+            channel = new FileInputStream(file).getChannel();
+        }
+        return channel;
+    }
+
+    /**
+     * @return initial counter block incremented by the given number of blocks, as a 128 bits integer
+     */
+    private byte[] counterAt(long block) {
+        byte[] counter = iv.clone();
+        long carry = block;
+        for (int i = BLOCK_SIZE - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xff) + (carry & 0xff);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+}
@@ -17,15 +17,23 @@ package com.github.barteksc.pdfviewer.source;
 
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.os.ParcelFileDescriptor;
 
 import com.github.barteksc.pdfviewer.util.FileUtils;
+import com.vivlio.android.pdfium.IoMode;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 
+/**
+ * Document bundled in the application assets. Uncompressed assets, see {@code noCompress}
+ * in the Android Gradle plugin, are read in place from the APK. Compressed assets are copied
+ * once to the cache directory.
+ */
 public class AssetSource implements DocumentSource {
 
     private final String assetName;
@@ -36,8 +44,27 @@ public class AssetSource implements DocumentSource {
 
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
-        File f = FileUtils.fileFromAsset(context, assetName);
-        ParcelFileDescriptor pfd = ParcelFileDescriptor.open(f, ParcelFileDescriptor.MODE_READ_ONLY);
-        return core.newDocument(pfd, password);
+        return createDocument(context, core, password, IoMode.DIRECT);
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password, IoMode ioMode) throws IOException {
+        AssetFileDescriptor afd;
+        try {
+            afd = context.getAssets().openFd(assetName);
+        } catch (FileNotFoundException e) {
+            // compressed assets cannot be read in place
+            File f = FileUtils.fileFromAsset(context, assetName);
+            ParcelFileDescriptor pfd = ParcelFileDescriptor.open(f, ParcelFileDescriptor.MODE_READ_ONLY);
+            return core.newDocument(pfd, password, ioMode);
+        }
+        // the descriptor is closed with the document
+        ParcelFileDescriptor pfd = afd.getParcelFileDescriptor();
+        try {
+            return core.newDocument(pfd, afd.getStartOffset(), afd.getLength(), password, ioMode);
+        } catch (IOException | RuntimeException e) {
+            afd.close();
+            throw e;
+        }
     }
 }
@@ -22,6 +22,10 @@ import com.vivlio.android.pdfium.PdfiumCore;
 
 import java.io.IOException;
 
+/**
+ * Document held in a byte array, copied once to native memory while it is open.
+ * Prefer {@link ByteBufferSource} with a direct buffer, or {@link FileSource}, for large documents.
+ */
 public class ByteArraySource implements DocumentSource {
 
     private byte[] data;
@@ -0,0 +1,39 @@
+package com.github.barteksc.pdfviewer.source;
+
+import android.content.Context;
+
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Document held in the remaining bytes of a buffer. A direct buffer is read by pdfium in place,
+ * without any copy, and must not be modified while the document is open. A heap buffer is
+ * copied once: its backing array to native memory, or when it is read-only, its bytes to
+ * a direct buffer read in place.
+ */
+public class ByteBufferSource implements DocumentSource {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        if (buffer.isDirect()) {
+            return core.newDocument(buffer.slice(), password);
+        }
+        if (buffer.hasArray()) {
+            return core.newDocument(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), password);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(buffer.remaining());
+        direct.put(buffer.duplicate());
+        direct.flip();
+        return core.newDocument(direct, password);
+    }
+}
@@ -17,6 +17,7 @@ package com.github.barteksc.pdfviewer.source;
 
 import android.content.Context;
 
+import com.vivlio.android.pdfium.IoMode;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 
@@ -24,4 +25,12 @@ import java.io.IOException;
 
 public interface DocumentSource {
     PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException;
+
+    /**
+     * Create the document, read as given by the I/O mode if it is opened from a file descriptor.
+     * Sources which do not open a file descriptor ignore the mode
+     */
+    default PdfDocument createDocument(Context context, PdfiumCore core, String password, IoMode ioMode) throws IOException {
+        return createDocument(context, core, password);
+    }
 }
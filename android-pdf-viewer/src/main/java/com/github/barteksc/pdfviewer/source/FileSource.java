@@ -18,6 +18,7 @@ package com.github.barteksc.pdfviewer.source;
 import android.content.Context;
 import android.os.ParcelFileDescriptor;
 
+import com.vivlio.android.pdfium.IoMode;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 
@@ -34,7 +35,12 @@ public class FileSource implements DocumentSource {
 
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        return createDocument(context, core, password, IoMode.DIRECT);
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password, IoMode ioMode) throws IOException {
         ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
-        return core.newDocument(pfd, password);
+        return core.newDocument(pfd, password, ioMode);
     }
 }
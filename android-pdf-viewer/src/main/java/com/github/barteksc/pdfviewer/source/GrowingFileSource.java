@@ -0,0 +1,112 @@
+package com.github.barteksc.pdfviewer.source;
+
+import android.os.SystemClock;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Document written sequentially to a file while it is displayed, by a download for instance.
+ * The bytes from the start of the file to its current length are available, the document is
+ * complete once the file reaches its expected size.
+ */
+public class GrowingFileSource implements ProgressiveDocumentSource, Closeable {
+
+    /**
+     * Interval between two checks of the file length while waiting for data
+     */
+    private static final long POLL_INTERVAL_MS = 20;
+
+    private final File file;
+    private final long expectedSize;
+
+    /**
+     * Length of the file when it was last checked, it only grows
+     */
+    private volatile long availableSize;
+
+    private FileChannel channel;
+
+    /**
+     * @param expectedSize size of the complete document, as announced by the download
+     */
+    public GrowingFileSource(File file, long expectedSize) {
+        this.file = file;
+        this.expectedSize = expectedSize;
+    }
+
+    @Override
+    public long size() {
+        return expectedSize;
+    }
+
+    @Override
+    public boolean isDataAvailable(long position, long size) {
+        long end = position + size;
+        return end <= availableSize || end <= updateAvailableSize();
+    }
+
+    @Override
+    public void addSegment(long position, long size) {
+        // the file is written in order, nothing to fetch first
+    }
+
+    @Override
+    public void waitForData(long timeoutMillis) throws IOException {
+        long known = availableSize;
+        if (known >= expectedSize) {
+            return;
+        }
+        long deadline = SystemClock.uptimeMillis() + timeoutMillis;
+        while (updateAvailableSize() == known && SystemClock.uptimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    @Override
+    public synchronized int read(long position, ByteBuffer dst) throws IOException {
+        long available = Math.min(availableSize, expectedSize);
+        if (position >= available) {
+            available = Math.min(updateAvailableSize(), expectedSize);
+            if (position >= available) {
+                return -1;
+            }
+        }
+        if (channel == null) {
+            channel = new FileInputStream(file).getChannel();
+        }
+        int limit = dst.limit();
+        dst.limit(dst.position() + (int) Math.min(dst.remaining(), available - position));
+        try {
+            return channel.read(dst, position);
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private long updateAvailableSize() {
+        long length = file.length();
+        if (length > availableSize) {
+            availableSize = length;
+        }
+        return availableSize;
+    }
+}
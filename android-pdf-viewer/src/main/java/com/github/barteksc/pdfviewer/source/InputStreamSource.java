@@ -17,13 +17,17 @@ package com.github.barteksc.pdfviewer.source;
 
 import android.content.Context;
 
-import com.github.barteksc.pdfviewer.util.Util;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Document read from a stream. The stream is copied in chunks to a temporary file in the cache
+ * directory, which pdfium reads on demand, so the document is never held in memory.
+ * The temporary file is deleted as soon as it is open, the stream is not closed.
+ */
 public class InputStreamSource implements DocumentSource {
 
     private final InputStream inputStream;
@@ -34,6 +38,6 @@ public class InputStreamSource implements DocumentSource {
 
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
-        return core.newDocument(Util.toByteArray(inputStream), password);
+        return core.newDocument(inputStream, context.getCacheDir(), password);
     }
 }
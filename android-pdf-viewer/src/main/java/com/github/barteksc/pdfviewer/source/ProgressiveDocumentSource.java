@@ -0,0 +1,36 @@
+package com.github.barteksc.pdfviewer.source;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+import com.vivlio.android.pdfium.ProgressiveSource;
+
+import java.io.IOException;
+
+/**
+ * Document displayed while its data is still arriving, see {@link GrowingFileSource}. The document
+ * is loaded once the data needed to open it arrived, its pages are drawn as their data arrives,
+ * reported by {@link com.github.barteksc.pdfviewer.listener.OnPageReadyListener}. Linearized
+ * documents are displayed from their first page.
+ */
+public interface ProgressiveDocumentSource extends SeekableDocumentSource, ProgressiveSource {
+
+    @Override
+    default PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        return createDocument(context, core, password, (CancellationSignal) null);
+    }
+
+    /**
+     * Create the document once the data needed to open it arrived
+     *
+     * @param cancellationSignal stops waiting for the data
+     */
+    default PdfDocument createDocument(Context context, PdfiumCore core, String password,
+                                       @Nullable CancellationSignal cancellationSignal) throws IOException {
+        return core.newDocument(this, password, cancellationSignal);
+    }
+}
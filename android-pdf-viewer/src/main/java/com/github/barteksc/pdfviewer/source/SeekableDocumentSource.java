@@ -0,0 +1,25 @@
+package com.github.barteksc.pdfviewer.source;
+
+import android.content.Context;
+
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+import com.vivlio.android.pdfium.SeekableSource;
+
+import java.io.IOException;
+
+/**
+ * Document read by pdfium from the source as it needs it, instead of being decrypted or extracted
+ * to memory first, see {@link AesCtrFileSource} and {@link ZipEntrySource}. The I/O mode is ignored,
+ * the source is read by blocks of 64KB.
+ * <p>
+ * A source which is {@link java.io.Closeable} is closed with the document, it may be loaded again
+ * afterwards but is read by one document at a time.
+ */
+public interface SeekableDocumentSource extends DocumentSource, SeekableSource {
+
+    @Override
+    default PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        return core.newDocument(this, password);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.barteksc.pdfviewer.source;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SharedMemory;
+
+import androidx.annotation.RequiresApi;
+
+import com.vivlio.android.pdfium.PdfDocument;
+import com.vivlio.android.pdfium.PdfiumCore;
+
+import java.io.IOException;
+
+/**
+ * Document held in shared memory, typically received from another process. It is mapped
+ * read only and read by pdfium in place, without any copy. The mapping is released when
+ * the document is closed, closing the shared memory is left to the caller.
+ */
+@RequiresApi(Build.VERSION_CODES.O_MR1)
+public class SharedMemorySource implements DocumentSource {
+
+    private final SharedMemory sharedMemory;
+
+    public SharedMemorySource(SharedMemory sharedMemory) {
+        this.sharedMemory = sharedMemory;
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        return core.newDocument(sharedMemory, password);
+    }
+}
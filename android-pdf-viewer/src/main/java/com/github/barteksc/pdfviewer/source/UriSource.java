@@ -19,6 +19,7 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
 
+import com.vivlio.android.pdfium.IoMode;
 import com.vivlio.android.pdfium.PdfDocument;
 import com.vivlio.android.pdfium.PdfiumCore;
 
@@ -34,7 +35,12 @@ public class UriSource implements DocumentSource {
 
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        return createDocument(context, core, password, IoMode.DIRECT);
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password, IoMode ioMode) throws IOException {
         ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r");
-        return core.newDocument(pfd, password);
+        return core.newDocument(pfd, password, ioMode);
     }
 }
@@ -0,0 +1,161 @@
+package com.github.barteksc.pdfviewer.source;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Document stored uncompressed in a zip archive, read in place from the archive
+ * without being extracted. Compressed entries, encrypted entries and zip64 archives
+ * are not supported.
+ */
+public class ZipEntrySource implements SeekableDocumentSource, Closeable {
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_ENTRY = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private final File zipFile;
+    private final String entryName;
+
+    private FileChannel channel;
+    private long dataOffset;
+    private long entrySize;
+
+    public ZipEntrySource(File zipFile, String entryName) {
+        this.zipFile = zipFile;
+        this.entryName = entryName;
+    }
+
+    @Override
+    public long size() throws IOException {
+        open();
+        return entrySize;
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst) throws IOException {
+        open();
+        if (position >= entrySize) {
+            return -1;
+        }
+        int limit = dst.limit();
+        dst.limit(dst.position() + (int) Math.min(dst.remaining(), entrySize - position));
+        try {
+            return channel.read(dst, dataOffset + position);
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        FileChannel channel = new FileInputStream(zipFile).getChannel();
+        try {
+            locateEntry(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+    }
+
+    /**
+     * Find the entry in the central directory, then its data after the local header
+     */
+    private void locateEntry(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readAt(channel, fileSize - tailSize, tailSize);
+        int end = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_OF_CENTRAL_DIRECTORY) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip archive: " + zipFile);
+        }
+        int entriesCount = tail.getShort(end + 10) & 0xffff;
+        long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+        long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+        if (entriesCount == 0xffff || directoryOffset == 0xffffffffL) {
+            throw new IOException("Zip64 archives are not supported: " + zipFile);
+        }
+
+        ByteBuffer directory = readAt(channel, directoryOffset, (int) directorySize);
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        for (int i = 0; i < entriesCount; i++) {
+            if (directory.getInt(offset) != CENTRAL_DIRECTORY_ENTRY) {
+                throw new IOException("Invalid central directory: " + zipFile);
+            }
+            int nameLength = directory.getShort(offset + 28) & 0xffff;
+            int extraLength = directory.getShort(offset + 30) & 0xffff;
+            int commentLength = directory.getShort(offset + 32) & 0xffff;
+            if (nameLength == name.length && nameEquals(directory, offset + CENTRAL_DIRECTORY_ENTRY_SIZE, name)) {
+                int flags = directory.getShort(offset + 8) & 0xffff;
+                int method = directory.getShort(offset + 10) & 0xffff;
+                if ((flags & 1) != 0) {
+                    throw new IOException("Entry is encrypted: " + entryName);
+                }
+                if (method != 0) {
+                    throw new IOException("Entry is compressed: " + entryName);
+                }
+                entrySize = directory.getInt(offset + 24) & 0xffffffffL;
+                long headerOffset = directory.getInt(offset + 42) & 0xffffffffL;
+                ByteBuffer header = readAt(channel, headerOffset, LOCAL_HEADER_SIZE);
+                if (header.getInt(0) != LOCAL_HEADER) {
+                    throw new IOException("Invalid local header: " + entryName);
+                }
+                // the extra field of the local header may differ from the central directory one
+                dataOffset = headerOffset + LOCAL_HEADER_SIZE
+                        + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+                if (dataOffset + entrySize > fileSize) {
+                    throw new IOException("Truncated entry: " + entryName);
+                }
+                return;
+            }
+            offset += CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength + extraLength + commentLength;
+        }
+        throw new IOException("No entry " + entryName + " in " + zipFile);
+    }
+
+    private static boolean nameEquals(ByteBuffer directory, int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (directory.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
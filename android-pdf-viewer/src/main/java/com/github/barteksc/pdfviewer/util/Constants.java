@@ -31,19 +31,124 @@ public class Constants {
      */
     public static float PART_SIZE = 256;
 
+    /**
+     * Parts are rendered for power of two zoom levels, the level used for a zoom is the lowest one
+     * whose parts are drawn at most MAX_PART_UPSCALE times their rendered size (default 1.25)
+     */
+    public static float MAX_PART_UPSCALE = 1.25f;
+
+    /**
+     * Above this scroll velocity, in dp per second, parts are rendered at a lower zoom level,
+     * in RGB_565 and without annotations, then rendered again once the document stops (default 2000, 0 to disable)
+     */
+    public static int MOTION_QUALITY_VELOCITY = 2000;
+
+    /**
+     * Number of zoom levels below the current one motion parts are rendered at, 1 for half resolution (default 1)
+     */
+    public static int MOTION_QUALITY_LEVEL_DROP = 1;
+
     /**
      * Part of document above and below screen that should be preloaded, in dp
      */
     public static int PRELOAD_OFFSET = 20;
 
+    /**
+     * While scrolling, the document is preloaded ahead of the screen as far as it will scroll
+     * in this duration at the current velocity, and less behind the screen (default 400ms)
+     */
+    public static int PRELOAD_LOOKAHEAD_MS = 400;
+
+    /**
+     * Maximum preload ahead of the screen, in screen lengths (default 1)
+     */
+    public static float MAX_PRELOAD_SCREENS = 1;
+
+    /**
+     * Number of display frames between two part loads while drag-scrolling (default 1, every frame)
+     */
+    public static int SCROLL_LOAD_FRAME_INTERVAL = 1;
+
+    /**
+     * Number of pages measured in the background before their sizes are applied,
+     * when the layout is lazy (default 256)
+     */
+    public static int LAZY_LAYOUT_BATCH_SIZE = 256;
+
     public static class Cache {
 
         /**
-         * The size of the cache (number of bitmaps kept)
+         * Maximum number of parts requested by a single load (default 120).
+         * Memory held by the cache is bounded by its size in bytes, see {@link #MEMORY_CLASS_DIVIDER}
          */
         public static int CACHE_SIZE = 120;
 
+        /**
+         * By default, the parts cache may use 1/MEMORY_CLASS_DIVIDER of the application memory class (default 8)
+         */
+        public static int MEMORY_CLASS_DIVIDER = 8;
+
+        /**
+         * Same as {@link #MEMORY_CLASS_DIVIDER}, on low RAM devices (default 16)
+         */
+        public static int LOW_RAM_MEMORY_CLASS_DIVIDER = 16;
+
+        /**
+         * Lower bound of the default parts cache size, in bytes (default 4MB)
+         */
+        public static long MIN_CACHE_BYTES = 4 * 1024 * 1024;
+
+        /**
+         * Maximum number of parts requested by a single load while drag-scrolling
+         */
+        public static int SCROLL_PARTS_BUDGET = 32;
+
+        /**
+         * Maximum number of parts outside of the viewport requested by a single load (default 48)
+         */
+        public static int PRELOAD_PARTS_BUDGET = 48;
+
         public static int THUMBNAILS_CACHE_SIZE = 8;
+
+        /**
+         * Maximum size in bytes of bitmaps kept for reuse once evicted from the cache (default 8MB)
+         */
+        public static long BITMAP_POOL_SIZE = 8 * 1024 * 1024;
+
+        /**
+         * Maximum size in bytes of the tiles kept on disk, when the disk cache is enabled (default 64MB)
+         */
+        public static long DISK_CACHE_SIZE = 64 * 1024 * 1024;
+
+        /**
+         * Maximum number of native pages kept open with their text pages, the least recently used
+         * are closed beyond it unless they are displayed or in use (default 24)
+         */
+        public static int MAX_OPEN_PAGES = 24;
+
+        /**
+         * Maximum number of documents whose layout metadata is kept on disk (default 32)
+         */
+        public static int METADATA_CACHE_ENTRIES = 32;
+    }
+
+    public static class Search {
+
+        /**
+         * Number of pages whose text is extracted by a single native call, the native lock
+         * is released between calls (default 4)
+         */
+        public static int TEXT_BATCH_SIZE = 4;
+
+        /**
+         * Number of threads matching the extracted text, read when the first search starts (default 2)
+         */
+        public static int MATCHER_THREADS = 2;
+
+        /**
+         * Batches extracted ahead of the matching, bounds the text held in memory (default 16)
+         */
+        public static int MAX_PENDING_BATCHES = 16;
     }
 
     public static class Pinch {
@@ -17,11 +17,17 @@ package com.github.barteksc.pdfviewer.util;
 
 import android.content.Context;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 public class FileUtils {
 
@@ -29,21 +35,81 @@ public class FileUtils {
         // Prevents instantiation
     }
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Copy of an asset in the cache directory. The copy is made once and reused as long as
+     * the application is not updated and its content matches the CRC32 recorded with it
+     */
     public static File fileFromAsset(Context context, String assetName) throws IOException {
         File outFile = new File(context.getCacheDir(), assetName + "-pdfview.pdf");
+        File checksumFile = new File(context.getCacheDir(), assetName + "-pdfview.crc");
         if (assetName.contains("/")) {
             outFile.getParentFile().mkdirs();
         }
-        copy(context.getAssets().open(assetName), outFile);
+        long apkModifiedTime = new File(context.getApplicationInfo().sourceDir).lastModified();
+        if (isValidCopy(outFile, checksumFile, apkModifiedTime)) {
+            return outFile;
+        }
+
+        File tmpFile = File.createTempFile("asset", ".tmp", outFile.getParentFile());
+        try {
+            CheckedInputStream inputStream = new CheckedInputStream(context.getAssets().open(assetName), new CRC32());
+            copy(inputStream, tmpFile);
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(checksumFile))) {
+                output.writeLong(apkModifiedTime);
+                output.writeLong(tmpFile.length());
+                output.writeLong(inputStream.getChecksum().getValue());
+            }
+            if (!tmpFile.renameTo(outFile)) {
+                throw new IOException("Cannot rename " + tmpFile);
+            }
+        } finally {
+            tmpFile.delete();
+        }
         return outFile;
     }
 
+    /**
+     * @return true if the copy was made from the installed application and is not corrupted
+     */
+    private static boolean isValidCopy(File file, File checksumFile, long apkModifiedTime) {
+        if (!file.isFile() || !checksumFile.isFile()) {
+            return false;
+        }
+        long length;
+        long checksum;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(checksumFile))) {
+            if (input.readLong() != apkModifiedTime) {
+                return false;
+            }
+            length = input.readLong();
+            checksum = input.readLong();
+        } catch (IOException e) {
+            return false;
+        }
+        if (file.length() != length) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return crc.getValue() == checksum;
+    }
+
     public static void copy(InputStream inputStream, File output) throws IOException {
         OutputStream outputStream = null;
         try {
             outputStream = new FileOutputStream(output);
             int read = 0;
-            byte[] bytes = new byte[1024];
+            byte[] bytes = new byte[BUFFER_SIZE];
             while ((read = inputStream.read(bytes)) != -1) {
                 outputStream.write(bytes, 0, read);
             }
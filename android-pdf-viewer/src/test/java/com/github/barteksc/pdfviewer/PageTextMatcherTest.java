@@ -0,0 +1,62 @@
+package com.github.barteksc.pdfviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The matcher must find every page pdfium matches, its false positives are dropped by pdfium.
+ */
+public class PageTextMatcherTest {
+
+    @Test
+    public void ignoresCaseUnlessRequired() {
+        assertTrue(new PageTextMatcher("Hello", false).mayMatch("say hELLO world"));
+        assertFalse(new PageTextMatcher("Hello", true).mayMatch("say hELLO world"));
+        assertTrue(new PageTextMatcher("Hello", true).mayMatch("say Hello world"));
+    }
+
+    @Test
+    public void skipsSeparators() {
+        PageTextMatcher matcher = new PageTextMatcher("example", false);
+        assertTrue(matcher.mayMatch("an exam-\r\nple"));
+        assertTrue(matcher.mayMatch("an exam\u00ADple"));
+        assertTrue(matcher.mayMatch("an exam\u00A0ple"));
+        assertTrue(matcher.mayMatch("an exam\u0002ple"));
+        assertTrue(new PageTextMatcher("new  york", false).mayMatch("New\r\nYork"));
+    }
+
+    @Test
+    public void matchesQueryStartingWithSkippedCharacter() {
+        assertTrue(new PageTextMatcher("-5", false).mayMatch("from -5 to 5"));
+        assertTrue(new PageTextMatcher("-1", false).mayMatch("x-1"));
+        assertTrue(new PageTextMatcher(" -1", false).mayMatch("-1"));
+        assertFalse(new PageTextMatcher("-1", false).mayMatch("-2"));
+    }
+
+    @Test
+    public void comparesCodePointsOutsideBasicPlane() {
+        // mathematical bold capitals, two chars each
+        assertTrue(new PageTextMatcher("caf\u00E9", false).mayMatch("\uD835\uDC00\uD835\uDC01 caf\u00E9"));
+        assertTrue(new PageTextMatcher("\uD835\uDC01 c", false).mayMatch("\uD835\uDC00\uD835\uDC01 caf\u00E9"));
+        assertFalse(new PageTextMatcher("\uD835\uDC01", false).mayMatch("\uD835\uDC00"));
+        // Deseret capital and small long i
+        assertTrue(new PageTextMatcher("\uD801\uDC00", false).mayMatch("a \uD801\uDC28 b"));
+        assertFalse(new PageTextMatcher("\uD801\uDC00", true).mayMatch("a \uD801\uDC28 b"));
+    }
+
+    @Test
+    public void leavesSeparatorOnlyQueryToPdfium() {
+        assertTrue(new PageTextMatcher("-", false).mayMatch("text"));
+        assertFalse(new PageTextMatcher("-", false).mayMatch(""));
+    }
+
+    @Test
+    public void matchesEachPage() {
+        PageTextMatcher matcher = new PageTextMatcher("pdf", false);
+        assertArrayEquals(new boolean[]{true, false, false, true},
+                matcher.mayMatch(new String[]{"A PDF file", "none", null, "p d f"}));
+    }
+}
@@ -0,0 +1,102 @@
+package com.vivlio.android.pdfium;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.vivlio.android.pdfium.util.Size;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares measuring the pages of a synthetic 10k pages document one by one with
+ * {@link PdfiumCore#getPageSize(PdfDocument, int)} and in bulk with
+ * {@link PdfiumCore#getPageSizes(PdfDocument, int, int, int[])}.
+ * <p>
+ * Timings are logged with the PageSizeBenchmark tag:
+ * <pre>
+ * ./gradlew :pdfium:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.vivlio.android.pdfium.PageSizeBenchmarkTest
+ * adb logcat -s PageSizeBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class PageSizeBenchmarkTest {
+
+    private static final String TAG = "PageSizeBenchmark";
+
+    private static final int PAGE_COUNT = 10000;
+
+    private static final int BATCH_SIZE = 4096;
+
+    private static final int RUNS = 5;
+
+    /**
+     * Media boxes of the pages, in points, used in turn
+     */
+    private static final int[][] PAGE_SIZES = {{612, 792}, {595, 842}, {842, 595}, {420, 595}};
+
+    private PdfiumCore pdfiumCore;
+
+    private PdfDocument document;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        pdfiumCore = new PdfiumCore(context);
+        document = pdfiumCore.newDocument(TestDocuments.createDocument(PAGE_COUNT, PAGE_SIZES));
+        assertEquals(PAGE_COUNT, pdfiumCore.getPageCount(document));
+    }
+
+    @After
+    public void tearDown() {
+        pdfiumCore.closeDocument(document);
+    }
+
+    @Test
+    public void perPageVersusBulk() {
+        int[] perPage = new int[2 * PAGE_COUNT];
+        int[] bulk = new int[2 * PAGE_COUNT];
+        int[] batch = new int[2 * BATCH_SIZE];
+
+        long bestPerPage = Long.MAX_VALUE;
+        long bestBulk = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int page = 0; page < PAGE_COUNT; page++) {
+                Size size = pdfiumCore.getPageSize(document, page);
+                perPage[2 * page] = size.getWidth();
+                perPage[2 * page + 1] = size.getHeight();
+            }
+            bestPerPage = Math.min(bestPerPage, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int firstPage = 0; firstPage < PAGE_COUNT; firstPage += BATCH_SIZE) {
+                int count = pdfiumCore.getPageSizes(document, firstPage, BATCH_SIZE, batch);
+                System.arraycopy(batch, 0, bulk, 2 * firstPage, 2 * count);
+            }
+            bestBulk = Math.min(bestBulk, System.nanoTime() - start);
+        }
+
+        assertArrayEquals(perPage, bulk);
+        Log.i(TAG, String.format(Locale.ROOT, "%d pages, best of %d runs: per page %.1f ms, bulk %.1f ms (x%.1f)",
+                PAGE_COUNT, RUNS, bestPerPage / 1e6, bestBulk / 1e6, (double) bestPerPage / bestBulk));
+    }
+
+    @Test
+    public void bulkStopsAtLastPage() {
+        int[] sizes = new int[2 * BATCH_SIZE];
+        int count = pdfiumCore.getPageSizes(document, PAGE_COUNT - 10, BATCH_SIZE, sizes);
+        assertEquals(10, count);
+        assertEquals(0, pdfiumCore.getPageSizes(document, PAGE_COUNT, BATCH_SIZE, sizes));
+    }
+}
@@ -0,0 +1,135 @@
+package com.vivlio.android.pdfium;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.vivlio.android.pdfium.util.Size;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Opens documents from an {@link ArrivingSource} standing for a download: the content
+ * arrives in chunks, one more each time pdfium waits for data.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressiveSourceTest {
+
+    private static final int PAGE_COUNT = 20;
+
+    private static final int CHUNK_SIZE = 512;
+
+    private static final int LINEARIZED_PAGE_COUNT = 12;
+
+    private PdfiumCore pdfiumCore;
+
+    private byte[] content;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        pdfiumCore = new PdfiumCore(context);
+        content = TestDocuments.createDocument(PAGE_COUNT, new int[][]{{612, 792}});
+    }
+
+    @Test
+    public void opensOnceDataArrived() throws Exception {
+        ArrivingSource source = new ArrivingSource(content, CHUNK_SIZE, Integer.MAX_VALUE);
+        PdfDocument document = pdfiumCore.newDocument(source, null, new CancellationSignal());
+        try {
+            assertTrue(source.waits > 0);
+            assertEquals(PAGE_COUNT, pdfiumCore.getPageCount(document));
+            for (int page = 0; page < PAGE_COUNT; page++) {
+                assertTrue(pdfiumCore.isPageAvailable(document, page));
+            }
+            assertTrue(pdfiumCore.isDocumentComplete(document));
+        } finally {
+            pdfiumCore.closeDocument(document);
+        }
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void cancelStopsWaiting() throws Exception {
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        ArrivingSource source = new ArrivingSource(content, CHUNK_SIZE, 2) {
+            @Override
+            public void waitForData(long timeoutMillis) {
+                super.waitForData(timeoutMillis);
+                if (waits == 3) {
+                    cancellationSignal.cancel();
+                }
+            }
+        };
+        try {
+            pdfiumCore.newDocument(source, null, cancellationSignal);
+            fail("Document opened without its data");
+        } catch (OperationCanceledException e) {
+            assertTrue(source.closed);
+        }
+    }
+
+    @Test
+    public void pagesOfCompleteDocumentAreAvailable() throws Exception {
+        PdfDocument document = pdfiumCore.newDocument(content);
+        try {
+            assertTrue(pdfiumCore.isPageAvailable(document, 0));
+            assertTrue(pdfiumCore.isDocumentComplete(document));
+            assertFalse(pdfiumCore.isDocumentLinearized(document));
+        } finally {
+            pdfiumCore.closeDocument(document);
+        }
+    }
+
+    @Test
+    public void rendersFirstPageOfLinearizedDocumentBeforeTheRest() throws Exception {
+        byte[] linearized = TestDocuments.createLinearizedDocument(LINEARIZED_PAGE_COUNT);
+        int firstPageEnd = TestDocuments.linearizedHeaderValue(linearized, "E");
+        // pdfium needs 512 bytes past the first page to open the document
+        int maxChunks = (firstPageEnd + 1024) / CHUNK_SIZE + 1;
+        ArrivingSource source = new ArrivingSource(linearized, CHUNK_SIZE, maxChunks);
+        PdfDocument document = pdfiumCore.newDocument(source, null, new CancellationSignal());
+        try {
+            int arrived = source.available;
+            assertTrue(arrived < linearized.length / 2);
+            assertTrue(pdfiumCore.isDocumentLinearized(document));
+            assertFalse(pdfiumCore.isDocumentComplete(document));
+            assertEquals(LINEARIZED_PAGE_COUNT, pdfiumCore.getPageCount(document));
+            assertTrue(pdfiumCore.isPageAvailable(document, 0));
+            assertFalse(pdfiumCore.isPageAvailable(document, LINEARIZED_PAGE_COUNT - 1));
+
+            Size size = pdfiumCore.getPageSize(document, 0);
+            assertTrue(size.getWidth() > 0 && size.getWidth() < size.getHeight());
+            assertTrue(pdfiumCore.openPage(document, 0) != 0);
+            Bitmap bitmap = Bitmap.createBitmap(size.getWidth() / 4, size.getHeight() / 4, Bitmap.Config.ARGB_8888);
+            try {
+                pdfiumCore.renderPageBitmap(document, bitmap, 0, 0, 0, bitmap.getWidth(), bitmap.getHeight());
+                // the page is filled with blue, nothing is drawn if its content cannot be read
+                assertEquals(Color.BLUE, bitmap.getPixel(bitmap.getWidth() / 2, bitmap.getHeight() / 2));
+            } finally {
+                bitmap.recycle();
+            }
+            // read with the data arrived when the document opened, never past it
+            assertEquals(arrived, source.available);
+            assertEquals(0, source.readsPastAvailable);
+
+            source.arriveAll();
+            assertTrue(pdfiumCore.isPageAvailable(document, LINEARIZED_PAGE_COUNT - 1));
+            assertTrue(pdfiumCore.isDocumentComplete(document));
+        } finally {
+            pdfiumCore.closeDocument(document);
+        }
+    }
+}
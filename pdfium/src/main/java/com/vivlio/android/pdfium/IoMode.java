@@ -0,0 +1,31 @@
+package com.vivlio.android.pdfium;
+
+/**
+ * How pdfium reads a document opened from a file descriptor,
+ * see {@link PdfiumCore#newDocument(android.os.ParcelFileDescriptor, String, IoMode)}
+ */
+public enum IoMode {
+
+    /**
+     * Every read of pdfium is a pread() call
+     */
+    DIRECT(0),
+
+    /**
+     * The file is mapped read only, reads are copies from the mapping. Files which cannot be
+     * mapped, such as pipes, are read directly
+     */
+    MMAP(1),
+
+    /**
+     * Small reads are served from 16 aligned blocks of 64KB read ahead, the least recently used
+     * block is replaced. Reads of a block or more are not cached
+     */
+    BLOCK_CACHE(2);
+
+    final int nativeValue;
+
+    IoMode(int nativeValue) {
+        this.nativeValue = nativeValue;
+    }
+}
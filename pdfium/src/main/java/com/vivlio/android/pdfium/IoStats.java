@@ -0,0 +1,62 @@
+package com.vivlio.android.pdfium;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Reads made by pdfium since the document was opened, and the reads from the file serving them,
+ * see {@link IoMode}. Documents loaded from memory are not counted.
+ */
+public class IoStats {
+
+    private final long requests;
+    private final long requestedBytes;
+    private final long syscalls;
+    private final long bytesRead;
+
+    public IoStats(long requests, long requestedBytes, long syscalls, long bytesRead) {
+        this.requests = requests;
+        this.requestedBytes = requestedBytes;
+        this.syscalls = syscalls;
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * @return number of blocks requested by pdfium
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return number of bytes requested by pdfium
+     */
+    public long getRequestedBytes() {
+        return requestedBytes;
+    }
+
+    /**
+     * @return number of pread() and mmap() calls, or of {@link SeekableSource} reads,
+     * page faults of a mapping are not counted
+     */
+    public long getSyscalls() {
+        return syscalls;
+    }
+
+    /**
+     * @return number of bytes read from the file, mapped files are not counted
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "IoStats{" +
+                "requests=" + requests +
+                ", requestedBytes=" + requestedBytes +
+                ", syscalls=" + syscalls +
+                ", bytesRead=" + bytesRead +
+                '}';
+    }
+}
@@ -5,8 +5,10 @@ import android.os.ParcelFileDescriptor;
 
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.collection.ArrayMap;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -149,6 +151,34 @@ public class PdfDocument {
     public long mNativeDocPtr;
     ParcelFileDescriptor parcelFileDescriptor;
 
+    long fileSize = -1;
+    long fileModifiedTime = -1;
+    long fileOffset = 0;
+
+    /**
+     * Content of a document loaded from a direct buffer, read by pdfium until the document is closed
+     */
+    ByteBuffer memory;
+    boolean memoryMapped;
+
+    /**
+     * Source of a document read through Java, closed with the document if it is closeable
+     */
+    SeekableSource source;
+
+    /**
+     * Size of the source, kept apart from the file size which identifies the document
+     */
+    long sourceSize = -1;
+
+    /**
+     * @return source of a document whose data may still be arriving, null for other documents
+     */
+    @Nullable
+    public ProgressiveSource getProgressiveSource() {
+        return source instanceof ProgressiveSource ? (ProgressiveSource) source : null;
+    }
+
     public final Map<Integer, Long> mNativePagesPtr = new ArrayMap<>();
     public final Map<Integer, Long> mNativeTextPtr = new ArrayMap<>();
 
@@ -159,4 +189,26 @@ public class PdfDocument {
     public boolean hasText(int index) {
         return mNativeTextPtr.containsKey(index);
     }
+
+    /**
+     * @return size in bytes of the document file, -1 if it was not loaded from a file
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @return last modification time of the document file in milliseconds,
+     * -1 if it was not loaded from a file
+     */
+    public long getFileModifiedTime() {
+        return fileModifiedTime;
+    }
+
+    /**
+     * @return offset of the document in its file, not 0 for documents embedded in a larger file
+     */
+    public long getFileOffset() {
+        return fileOffset;
+    }
 }
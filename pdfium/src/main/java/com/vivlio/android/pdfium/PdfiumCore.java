@@ -6,22 +6,37 @@ import android.graphics.Bitmap;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.RectF;
+import android.os.Build;
+import android.os.CancellationSignal;
 import android.os.ParcelFileDescriptor;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
 import android.util.Log;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import com.vivlio.android.pdfium.util.Size;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 @SuppressWarnings("unused")
 public class PdfiumCore {
@@ -30,10 +45,59 @@ public class PdfiumCore {
     private static final String TAG = PdfiumCore.class.getName();
     private static final Class<FileDescriptor> FD_CLASS = FileDescriptor.class;
     private static final String FD_FIELD_NAME = "descriptor";
+
+    /**
+     * File identifier types, see {@link #getFileIdentifier(PdfDocument, int)}
+     */
+    public static final int FILE_ID_PERMANENT = 0;
+    public static final int FILE_ID_CHANGING = 1;
+
     /* synchronize native methods */
     private static final Object lock = new Object();
     private final int mCurrentDpi;
 
+    /**
+     * Progressive render status, see fpdf_progressive.h
+     */
+    private static final int RENDER_TOBECONTINUED = 1;
+    private static final int RENDER_DONE = 2;
+
+    /**
+     * Maximum duration of a progressive render step, the lock is released between steps
+     */
+    private static final long RENDER_STEP_NANOS = 4000000L;
+
+    /**
+     * Size of the chunks a stream is copied in, see {@link #newDocument(InputStream, File, String)}
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Data availability status, see fpdf_dataavail.h
+     */
+    private static final int DATA_ERROR = -1;
+    private static final int DATA_NOT_AVAILABLE = 0;
+    private static final int DATA_AVAILABLE = 1;
+    private static final int LINEARIZED = 1;
+
+    /**
+     * Longest wait for the data of a progressive document before checking the cancellation
+     */
+    private static final long DATA_WAIT_MS = 100;
+
+    /**
+     * Longest time background work yields the lock to progressive renders,
+     * so that it is not starved while the document scrolls
+     */
+    private static final long MAX_YIELD_NANOS = 50000000L;
+
+    private static final long YIELD_STEP_NANOS = 500000L;
+
+    /**
+     * Progressive renders in progress, see {@link #yieldToRenders()}
+     */
+    private static final AtomicInteger activeRenders = new AtomicInteger();
+
     static {
         try {
 //            System.loadLibrary("pdfsdk");
@@ -77,9 +141,27 @@ public class PdfiumCore {
     }
 
 
-    private native long nativeOpenDocument(int fd, String password);
+    private native long nativeOpenDocument(int fd, long offset, long length, String password, int ioMode);
+
+    private native long nativeOpenMemDocument(byte[] data, int offset, int length, String password);
+
+    private native void nativeGetIoStats(long docPtr, long[] stats);
 
-    private native long nativeOpenMemDocument(byte[] data, String password);
+    private native long nativeOpenDirectDocument(ByteBuffer buffer, long offset, long size, String password);
+
+    private native long nativeOpenSeekableDocument(SeekableSource source, long size, String password);
+
+    private native long nativeOpenProgressiveDocument(ProgressiveSource source, long size);
+
+    private native int nativeIsDocAvail(long docPtr);
+
+    private native void nativeGetAvailDocument(long docPtr, String password);
+
+    private native int nativeIsPageAvail(long docPtr, int pageIndex);
+
+    private native int nativeIsLinearized(long docPtr);
+
+    private native int nativeGetPagesText(long docPtr, int fromIndex, int count, String[] texts);
 
     private native void nativeCloseDocument(long docPtr);
 
@@ -116,6 +198,15 @@ public class PdfiumCore {
                                                int drawSizeHor, int drawSizeVer,
                                                boolean renderAnnot);
 
+    private native long nativeRenderPageBitmapStart(long pagePtr, Bitmap bitmap,
+                                                    int startX, int startY,
+                                                    int drawSizeHor, int drawSizeVer,
+                                                    boolean renderAnnot);
+
+    private native int nativeRenderPageBitmapContinue(long renderPtr, long stepNanos);
+
+    private native void nativeRenderPageBitmapClose(long renderPtr, boolean pageOpened);
+
 
     private native void nativeGetBookmarksArrayList(long docPtr, ArrayList<TOCEntry> out);
 
@@ -127,6 +218,10 @@ public class PdfiumCore {
 
     private native String nativeGetDocumentMetaText(long docPtr, String tag);
 
+    private native byte[] nativeGetFileIdentifier(long docPtr, int idType);
+
+    private native String nativeGetPageLabel(long docPtr, int pageIndex);
+
     private native Long nativeGetFirstChildBookmark(long docPtr, Long bookmarkPtr);
 
     private native Long nativeGetSiblingBookmark(long docPtr, long bookmarkPtr);
@@ -159,6 +254,8 @@ public class PdfiumCore {
 
     private native Size nativeGetPageSizeByIndex(long docPtr, int pageIndex, int dpi);
 
+    private native int nativeGetPageSizesByIndex(long docPtr, int fromIndex, int count, int dpi, int[] sizes);
+
     private native int nativeCountAndGetRects(long pagePtr, int offsetY, int offsetX, int width, int height, ArrayList<RectF> arr, long tid, int selSt, int selEd, float verticalExpandPercent);
 
     private native int nativeCountAndGetLineRects(long pagePtr,
@@ -291,10 +388,36 @@ public class PdfiumCore {
      * Create new document from file with password
      */
     public PdfDocument newDocument(ParcelFileDescriptor fd, String password) throws IOException {
+        return newDocument(fd, password, IoMode.DIRECT);
+    }
+
+    /**
+     * Create new document from file with password, read as given by the I/O mode
+     */
+    public PdfDocument newDocument(ParcelFileDescriptor fd, String password, IoMode ioMode) throws IOException {
+        return newDocument(fd, 0, -1, password, ioMode);
+    }
+
+    /**
+     * Create new document embedded in a file, from the given offset, such as an uncompressed
+     * asset opened with {@link android.content.res.AssetManager#openFd(String)}
+     *
+     * @param length length of the document, -1 if it ends with the file
+     */
+    public PdfDocument newDocument(ParcelFileDescriptor fd, long offset, long length, String password,
+                                   IoMode ioMode) throws IOException {
         PdfDocument document = new PdfDocument();
         document.parcelFileDescriptor = fd;
+        document.fileOffset = offset;
+        try {
+            StructStat stat = Os.fstat(fd.getFileDescriptor());
+            document.fileSize = length >= 0 ? length : stat.st_size - offset;
+            document.fileModifiedTime = stat.st_mtime * 1000;
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Cannot stat document file", e);
+        }
         synchronized (lock) {
-            document.mNativeDocPtr = nativeOpenDocument(getNumFd(fd), password);
+            document.mNativeDocPtr = nativeOpenDocument(getNumFd(fd), offset, length, password, ioMode.nativeValue);
         }
 
         if (document.mNativeDocPtr == 0) {
@@ -315,9 +438,17 @@ public class PdfiumCore {
      * Create new document from bytearray with password
      */
     public PdfDocument newDocument(byte[] data, String password) throws IOException {
+        return newDocument(data, 0, data.length, password);
+    }
+
+    /**
+     * Create new document from a range of a bytearray with password, the range is copied
+     * once to native memory
+     */
+    public PdfDocument newDocument(byte[] data, int offset, int length, String password) throws IOException {
         PdfDocument document = new PdfDocument();
         synchronized (lock) {
-            document.mNativeDocPtr = nativeOpenMemDocument(data, password);
+            document.mNativeDocPtr = nativeOpenMemDocument(data, offset, length, password);
         }
         if (document.mNativeDocPtr == 0) {
             throw new IOException("Cannot open document");
@@ -347,6 +478,23 @@ public class PdfiumCore {
 
     }
 
+    /**
+     * Close a page opened with {@link #openPage(PdfDocument, int)} and its text page if any,
+     * the text page is closed first as it refers to the page
+     */
+    public void closePage(PdfDocument doc, int pageIndex) {
+        synchronized (lock) {
+            Long textPtr = doc.mNativeTextPtr.remove(pageIndex);
+            if (textPtr != null) {
+                closeTextPage(textPtr);
+            }
+            Long pagePtr = doc.mNativePagesPtr.remove(pageIndex);
+            if (pagePtr != null) {
+                nativeClosePage(pagePtr);
+            }
+        }
+    }
+
     /**
      * Open range of pages and store native pointers in {@link PdfDocument}
      */
@@ -431,6 +579,54 @@ public class PdfiumCore {
         }
     }
 
+    /**
+     * Get the sizes of a range of pages in pixels, with a single native call and lock acquisition.
+     * Pages do not need to be opened.
+     *
+     * @param sizes receives the width and height of each page, in that order, at least 2 * count long
+     * @return number of pages measured, less than count if the range goes past the last page
+     */
+    public int getPageSizes(PdfDocument doc, int fromIndex, int count, int[] sizes) {
+        synchronized (lock) {
+            return nativeGetPageSizesByIndex(doc.mNativeDocPtr, fromIndex, count, mCurrentDpi, sizes);
+        }
+    }
+
+    /**
+     * Extract the text of a range of pages, with a single native call and lock acquisition.
+     * Pages are loaded for the extraction only, opened pages and their text pages are left as they are.
+     * Background callers should {@link #yieldToRenders()} first.
+     *
+     * @param texts receives the text of each page, null if it cannot be read, at least count long
+     * @return nanoseconds spent waiting for the lock
+     */
+    public long getPagesText(PdfDocument doc, int fromIndex, int count, String[] texts) {
+        Arrays.fill(texts, 0, Math.min(count, texts.length), null);
+        long start = System.nanoTime();
+        synchronized (lock) {
+            long waited = System.nanoTime() - start;
+            nativeGetPagesText(doc.mNativeDocPtr, fromIndex, count, texts);
+            return waited;
+        }
+    }
+
+    /**
+     * Wait while progressive renders are in progress, at most 50 ms, before background work
+     * takes the lock. Renders release the lock between their steps, they would otherwise
+     * wait for the background work at each step.
+     *
+     * @return nanoseconds waited
+     */
+    public long yieldToRenders() {
+        long start = System.nanoTime();
+        long waited = 0;
+        while (activeRenders.get() > 0 && waited < MAX_YIELD_NANOS) {
+            LockSupport.parkNanos(YIELD_STEP_NANOS);
+            waited = System.nanoTime() - start;
+        }
+        return waited;
+    }
+
     /**
      * Render page fragment on {@link Surface}.<br>
      * Page must be opened before rendering.
@@ -503,6 +699,270 @@ public class PdfiumCore {
         }
     }
 
+    /**
+     * Render page fragment on {@link Bitmap} progressively, in short steps.<br>
+     * Page must be opened before rendering.
+     * <p>
+     * Unlike {@link #renderPageBitmap(PdfDocument, Bitmap, int, int, int, int, int, boolean)},
+     * the native lock is released between steps, so that other calls are not blocked
+     * by a heavy page, and rendering is abandoned as soon as the signal is cancelled.
+     * The page must not be rendered by another call while this one is in progress.
+     *
+     * @return true if the page was fully rendered, false if rendering was cancelled,
+     * failed or if the page was closed in the meantime. The bitmap content is undefined in that case.
+     */
+    public boolean renderPageBitmap(@NonNull PdfDocument doc,
+                                    @NonNull Bitmap bitmap,
+                                    int pageIndex,
+                                    int startX, int startY,
+                                    int drawSizeX, int drawSizeY,
+                                    boolean renderAnnot,
+                                    @NonNull CancellationSignal cancellationSignal) {
+        activeRenders.incrementAndGet();
+        try {
+            return renderPageBitmapSteps(doc, bitmap, pageIndex, startX, startY, drawSizeX, drawSizeY,
+                    renderAnnot, cancellationSignal);
+        } finally {
+            activeRenders.decrementAndGet();
+        }
+    }
+
+    private boolean renderPageBitmapSteps(PdfDocument doc, Bitmap bitmap, int pageIndex,
+                                          int startX, int startY, int drawSizeX, int drawSizeY,
+                                          boolean renderAnnot, CancellationSignal cancellationSignal) {
+        long pagePtr;
+        long renderPtr;
+        synchronized (lock) {
+            Long page = doc.mNativePagesPtr.get(pageIndex);
+            if (page == null) {
+                return false;
+            }
+            pagePtr = page;
+            renderPtr = nativeRenderPageBitmapStart(pagePtr, bitmap,
+                    startX, startY, drawSizeX, drawSizeY, renderAnnot);
+        }
+        if (renderPtr == 0) {
+            return false;
+        }
+
+        boolean pageOpened = true;
+        int status = RENDER_TOBECONTINUED;
+        try {
+            while (status == RENDER_TOBECONTINUED && !cancellationSignal.isCanceled()) {
+                synchronized (lock) {
+                    Long page = doc.mNativePagesPtr.get(pageIndex);
+                    if (page == null || page != pagePtr) {
+                        pageOpened = false;
+                        break;
+                    }
+                    status = nativeRenderPageBitmapContinue(renderPtr, RENDER_STEP_NANOS);
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                if (pageOpened) {
+                    Long page = doc.mNativePagesPtr.get(pageIndex);
+                    pageOpened = page != null && page == pagePtr;
+                }
+                nativeRenderPageBitmapClose(renderPtr, pageOpened);
+            }
+        }
+        return status == RENDER_DONE;
+    }
+
+    /**
+     * Create new document from the remaining bytes of a direct buffer, without copying them.
+     * The buffer is referenced by the document and must not be modified until it is closed
+     */
+    public PdfDocument newDocument(ByteBuffer buffer, String password) throws IOException {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be direct");
+        }
+        PdfDocument document = new PdfDocument();
+        document.memory = buffer;
+        synchronized (lock) {
+            document.mNativeDocPtr = nativeOpenDirectDocument(buffer, buffer.position(), buffer.remaining(), password);
+        }
+        if (document.mNativeDocPtr == 0) {
+            throw new IOException("Cannot open document");
+        }
+        return document;
+    }
+
+    /**
+     * Create new document read from the source as pdfium needs it, by blocks of 64KB
+     * as with {@link IoMode#BLOCK_CACHE}, larger reads are made at once.
+     * The source is referenced by the document until it is closed
+     */
+    public PdfDocument newDocument(SeekableSource source, String password) throws IOException {
+        PdfDocument document = new PdfDocument();
+        document.source = source;
+        // unlike a file, its size alone does not identify the document across loads
+        long size = source.size();
+        try {
+            synchronized (lock) {
+                document.mNativeDocPtr = nativeOpenSeekableDocument(source, size, password);
+            }
+            if (document.mNativeDocPtr == 0) {
+                throw new IOException("Cannot open document");
+            }
+        } catch (IOException | RuntimeException e) {
+            closeSource(source);
+            throw e;
+        }
+        return document;
+    }
+
+    /**
+     * Create new document read from a source whose data is still arriving, as soon as the data
+     * needed to open it is available. Pages must only be opened once {@link #isPageAvailable(PdfDocument, int)}.
+     *
+     * @param cancellationSignal stops waiting for the data, the source is closed
+     * @throws android.os.OperationCanceledException if the signal was cancelled
+     */
+    public PdfDocument newDocument(ProgressiveSource source, String password,
+                                   @Nullable CancellationSignal cancellationSignal) throws IOException {
+        PdfDocument document = new PdfDocument();
+        document.source = source;
+        // unlike a file, its size alone does not identify the document across loads
+        long size = source.size();
+        document.sourceSize = size;
+        try {
+            synchronized (lock) {
+                document.mNativeDocPtr = nativeOpenProgressiveDocument(source, size);
+            }
+            while (true) {
+                int status;
+                synchronized (lock) {
+                    status = nativeIsDocAvail(document.mNativeDocPtr);
+                }
+                if (status == DATA_AVAILABLE) {
+                    break;
+                }
+                if (status == DATA_ERROR) {
+                    throw new IOException("Cannot open document");
+                }
+                if (cancellationSignal != null) {
+                    cancellationSignal.throwIfCanceled();
+                }
+                source.waitForData(DATA_WAIT_MS);
+            }
+            synchronized (lock) {
+                nativeGetAvailDocument(document.mNativeDocPtr, password);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (document.mNativeDocPtr != 0) {
+                closeDocument(document);
+            } else {
+                closeSource(source);
+            }
+            throw e;
+        }
+        return document;
+    }
+
+    /**
+     * Check whether the data of the page arrived, the source is told what the page needs next.
+     * Pages of documents not opened from a {@link ProgressiveSource} are always available
+     */
+    public boolean isPageAvailable(PdfDocument doc, int pageIndex) {
+        synchronized (lock) {
+            if (doc.mNativeDocPtr == 0) {
+                return false;
+            }
+            // pages which cannot be checked are opened, their error is reported then
+            return nativeIsPageAvail(doc.mNativeDocPtr, pageIndex) != DATA_NOT_AVAILABLE;
+        }
+    }
+
+    /**
+     * @return true if the document opened from a {@link ProgressiveSource} is linearized,
+     * its pages then arrive in order
+     */
+    public boolean isDocumentLinearized(PdfDocument doc) {
+        synchronized (lock) {
+            return doc.mNativeDocPtr != 0 && nativeIsLinearized(doc.mNativeDocPtr) == LINEARIZED;
+        }
+    }
+
+    /**
+     * @return true unless the document is opened from a {@link ProgressiveSource} whose data is
+     * still arriving
+     */
+    public boolean isDocumentComplete(PdfDocument doc) {
+        ProgressiveSource source = doc.getProgressiveSource();
+        return source == null || source.isDataAvailable(0, doc.sourceSize);
+    }
+
+    /**
+     * Create new document from shared memory, mapped read only without copying it.
+     * The mapping is released when the document is closed, the shared memory stays open
+     */
+    @RequiresApi(Build.VERSION_CODES.O_MR1)
+    public PdfDocument newDocument(SharedMemory sharedMemory, String password) throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = sharedMemory.mapReadOnly();
+        } catch (ErrnoException e) {
+            throw new IOException("Cannot map shared memory", e);
+        }
+        try {
+            PdfDocument document = newDocument(buffer, password);
+            document.memoryMapped = true;
+            return document;
+        } catch (IOException | RuntimeException e) {
+            SharedMemory.unmap(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Create new document from a stream, copied in chunks to a temporary file in the given
+     * directory. The file is deleted once open, its content is read by pdfium from the descriptor
+     * on demand, so the document is never held in memory. The stream is not closed
+     */
+    public PdfDocument newDocument(InputStream inputStream, File temporaryDirectory, String password) throws IOException {
+        File file = File.createTempFile("document", ".pdf", temporaryDirectory);
+        ParcelFileDescriptor fd;
+        try {
+            try (OutputStream output = new FileOutputStream(file)) {
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    output.write(buffer, 0, count);
+                }
+            }
+            fd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        } finally {
+            // the open descriptor keeps the content until the document is closed
+            file.delete();
+        }
+        PdfDocument document;
+        try {
+            document = newDocument(fd, password);
+        } catch (IOException | RuntimeException e) {
+            fd.close();
+            throw e;
+        }
+        // a temporary file does not identify the document across loads
+        document.fileSize = -1;
+        document.fileModifiedTime = -1;
+        return document;
+    }
+
+    /**
+     * @return reads made by pdfium since the document was opened
+     */
+    public IoStats getIoStats(PdfDocument doc) {
+        long[] stats = new long[4];
+        synchronized (lock) {
+            if (doc.mNativeDocPtr != 0) {
+                nativeGetIoStats(doc.mNativeDocPtr, stats);
+            }
+        }
+        return new IoStats(stats[0], stats[1], stats[2], stats[3]);
+    }
+
     /**
      * Release native resources and opened file
      */
@@ -524,6 +984,7 @@ public class PdfiumCore {
             doc.mNativePagesPtr.clear();
 
             nativeCloseDocument(doc.mNativeDocPtr);
+            doc.mNativeDocPtr = 0;
 
             if (doc.parcelFileDescriptor != null) { //if document was loaded from file
                 try {
@@ -533,6 +994,26 @@ public class PdfiumCore {
                 }
                 doc.parcelFileDescriptor = null;
             }
+            if (doc.memory != null) {
+                if (doc.memoryMapped && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                    SharedMemory.unmap(doc.memory);
+                }
+                doc.memory = null;
+            }
+            if (doc.source != null) {
+                closeSource(doc.source);
+                doc.source = null;
+            }
+        }
+    }
+
+    private static void closeSource(SeekableSource source) {
+        if (source instanceof Closeable) {
+            try {
+                ((Closeable) source).close();
+            } catch (IOException e) {
+                /* ignore */
+            }
         }
     }
 
@@ -555,6 +1036,38 @@ public class PdfiumCore {
         }
     }
 
+    /**
+     * Get the file identifier defined in the trailer of the document
+     *
+     * @param idType {@link #FILE_ID_PERMANENT} or {@link #FILE_ID_CHANGING}
+     * @return identifier bytes, null if the document has none
+     */
+    @Nullable
+    public byte[] getFileIdentifier(PdfDocument doc, int idType) {
+        synchronized (lock) {
+            return nativeGetFileIdentifier(doc.mNativeDocPtr, idType);
+        }
+    }
+
+    /**
+     * Get the label of a page, as defined by the page labels of the document (e.g. "iv" or "A-3")
+     *
+     * @return null if the document does not define a label for the page
+     */
+    @Nullable
+    public String getPageLabel(PdfDocument doc, int pageIndex) {
+        synchronized (lock) {
+            return nativeGetPageLabel(doc.mNativeDocPtr, pageIndex);
+        }
+    }
+
+    /**
+     * Density used to convert page sizes from points to pixels
+     */
+    public int getDpi() {
+        return mCurrentDpi;
+    }
+
     /**
      * Get table of contents (bookmarks) for given document
      */
@@ -0,0 +1,40 @@
+package com.vivlio.android.pdfium;
+
+import androidx.annotation.Keep;
+
+import java.io.IOException;
+
+/**
+ * Document still arriving, downloaded or copied, whose pages can be displayed as soon as their
+ * data is available, see {@link PdfiumCore#newDocument(ProgressiveSource, String, android.os.CancellationSignal)}.
+ * Linearized documents are displayed from their first page, other documents once their cross
+ * reference table at the end of the file arrived.
+ * <p>
+ * {@link #read(long, java.nio.ByteBuffer)} is only called for available data and must not wait
+ * for missing data, it returns -1 instead. Reads are not cached by blocks as for other
+ * {@link SeekableSource}s, only the ranges pdfium asks for are read. Sources are called by pdfium and by the viewer,
+ * from several threads.
+ */
+@Keep
+public interface ProgressiveSource extends SeekableSource {
+
+    /**
+     * @return true if every byte of the range arrived
+     */
+    @Keep
+    boolean isDataAvailable(long position, long size);
+
+    /**
+     * Hint that pdfium needs the range to go on, a source downloading ranges should fetch it next.
+     * Ranges overlap and may be partly available already
+     */
+    @Keep
+    void addSegment(long position, long size);
+
+    /**
+     * Wait until more data arrived, at most the given time
+     *
+     * @throws IOException if no more data will arrive, the transfer failed
+     */
+    void waitForData(long timeoutMillis) throws IOException;
+}
@@ -0,0 +1,33 @@
+package com.vivlio.android.pdfium;
+
+import androidx.annotation.Keep;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the content of a document, read by pdfium as it needs it,
+ * see {@link PdfiumCore#newDocument(SeekableSource, String)}. Sources which decode their
+ * content, decrypting or extracting it, only decode the blocks which are read.
+ * <p>
+ * Reads are made with the {@link PdfiumCore} lock held, one at a time, from the thread
+ * calling pdfium. A source which is {@link java.io.Closeable} is closed with the document.
+ */
+@Keep
+public interface SeekableSource {
+
+    /**
+     * @return size of the document in bytes
+     */
+    long size() throws IOException;
+
+    /**
+     * Read bytes of the document into the buffer, from its position, and advance its position
+     *
+     * @param position offset in the document of the first byte read
+     * @param dst      direct buffer wrapping the pdfium buffer, valid during the call only
+     * @return number of bytes read, at least one unless the end of the document is reached
+     */
+    @Keep
+    int read(long position, ByteBuffer dst) throws IOException;
+}
@@ -0,0 +1,34 @@
+#ifndef ANDROIDPDFVIEWERFORK_BITMAP_CONVERT_H
+#define ANDROIDPDFVIEWERFORK_BITMAP_CONVERT_H
+
+#include <cstddef>
+#include <cstdint>
+
+namespace BitmapConvert {
+
+    /**
+     * Convert one row of 3 bytes pixels, in red, green, blue order, to RGB_565.
+     * Byte loads through restrict pointers and a loop bound held in a register
+     * let the compiler vectorize it with interleaved loads.
+     */
+    inline void rgbRowTo565(const uint8_t *__restrict src, uint16_t *__restrict dst, size_t width) {
+        for (size_t x = 0; x < width; x++) {
+            uint16_t red = src[3 * x];
+            uint16_t green = src[3 * x + 1];
+            uint16_t blue = src[3 * x + 2];
+            dst[x] = (uint16_t) (((red & 0xF8) << 8) | ((green & 0xFC) << 3) | (blue >> 3));
+        }
+    }
+
+    inline void rgbBitmapTo565(const uint8_t *src, size_t srcStride,
+                               uint8_t *dst, size_t dstStride,
+                               size_t width, size_t height) {
+        for (size_t y = 0; y < height; y++) {
+            rgbRowTo565(src, reinterpret_cast<uint16_t *>(dst), width);
+            src += srcStride;
+            dst += dstStride;
+        }
+    }
+}
+
+#endif //ANDROIDPDFVIEWERFORK_BITMAP_CONVERT_H
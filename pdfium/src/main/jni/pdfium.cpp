@@ -22,9 +22,15 @@ extern "C" {
 #include <fpdf_edit.h>
 #include <string>
 #include <vector>
+#include <new>
+#include <algorithm>
 #include <fpdf_text.h>
+#include <fpdf_progressive.h>
+#include <fpdf_dataavail.h>
+#include <ctime>
 
 #include "toc-helper.h"
+#include "bitmap-convert.h"
 
 using namespace android;
 
@@ -50,19 +56,130 @@ static void destroyLibraryIfNeed() {
     }
 }
 
-struct rgb {
-    uint8_t red;
-    uint8_t green;
-    uint8_t blue;
+/**
+ * Size of a pixel in the BGR buffer RGB_565 bitmaps are rendered into
+ */
+static const int BGR_PIXEL_SIZE = 3;
+
+/**
+ * Per thread buffer RGB_565 bitmaps are rendered into, grown to the largest
+ * rendered bitmap and kept until the thread exits. A render nested in another one
+ * on the same thread falls back to a temporary allocation.
+ */
+struct ScratchBuffer {
+    void *data = nullptr;
+    size_t capacity = 0;
+    bool inUse = false;
+
+    ~ScratchBuffer() {
+        free(data);
+    }
 };
 
-class DocumentFile {
-private:
-    int fileFd;
+static thread_local ScratchBuffer sScratchBuffer;
+
+static void *acquireScratchBuffer(size_t size) {
+    ScratchBuffer &scratch = sScratchBuffer;
+    if (scratch.inUse) {
+        return malloc(size);
+    }
+    if (scratch.capacity < size) {
+        // content does not need to be kept, avoid the copy of realloc
+        free(scratch.data);
+        scratch.data = malloc(size);
+        scratch.capacity = scratch.data != nullptr ? size : 0;
+        if (scratch.data == nullptr) {
+            return nullptr;
+        }
+    }
+    scratch.inUse = true;
+    return scratch.data;
+}
+
+static void releaseScratchBuffer(void *buffer) {
+    ScratchBuffer &scratch = sScratchBuffer;
+    if (buffer != nullptr && buffer == scratch.data) {
+        scratch.inUse = false;
+    } else {
+        free(buffer);
+    }
+}
+
+/**
+ * How a document opened from a file descriptor is read, see IoMode.java
+ */
+enum IoMode {
+    IO_DIRECT = 0,
+    IO_MMAP = 1,
+    IO_BLOCK_CACHE = 2
+};
+
+/**
+ * Aligned blocks read ahead from the file, the least recently used is replaced
+ */
+static const size_t IO_BLOCK_SIZE = 64 * 1024;
+static const int IO_BLOCK_COUNT = 16;
+
+struct IoBlock {
+    uint8_t *data = nullptr;
+    off_t offset = -1;
+    size_t length = 0;
+    uint64_t lastUse = 0;
+};
+
+/**
+ * Reads of pdfium and reads from the file, see IoStats.java
+ */
+struct IoCounters {
+    uint64_t requests = 0;
+    uint64_t requestedBytes = 0;
+    uint64_t syscalls = 0;
+    uint64_t bytesRead = 0;
+};
+
+// cached when the first document is opened from a SeekableSource
+static JavaVM *javaVm = nullptr;
+static jmethodID sourceReadMethod = nullptr;
+static jmethodID sourceIsDataAvailableMethod = nullptr;
+static jmethodID sourceAddSegmentMethod = nullptr;
 
+class DocumentFile;
+
+// pdfium passes the address of the interface to its callbacks, the document follows it
+struct FileAvail {
+    FX_FILEAVAIL fileAvail;
+    DocumentFile *docFile;
+};
+
+struct DownloadHints {
+    FX_DOWNLOADHINTS hints;
+    DocumentFile *docFile;
+};
+
+class DocumentFile {
 public:
+    int fileFd;
+    // documents embedded in a larger file, such as an uncompressed asset, start at this offset
+    off_t fileOffset = 0;
+    int ioMode = IO_DIRECT;
     FPDF_DOCUMENT pdfDocument = nullptr;
     size_t fileSize;
+    // content of a document loaded from memory, owned by the document
+    jbyte *ownedData = nullptr;
+    // read only mapping of the file in IO_MMAP mode, mapped points to the document in it
+    void *mapping = nullptr;
+    size_t mappingSize = 0;
+    uint8_t *mapped = nullptr;
+    IoBlock blocks[IO_BLOCK_COUNT];
+    uint64_t blockClock = 0;
+    IoCounters counters;
+    // global reference to the SeekableSource of a document read through Java, fileFd is unused
+    jobject source = nullptr;
+    // availability of a document read from a ProgressiveSource, pdfium keeps pointers to both
+    // interfaces until it is destroyed
+    FPDF_AVAIL avail = nullptr;
+    FPDF_FILEACCESS fileAccess{};
+    FileAvail fileAvail{};
 
     DocumentFile() {
         initLibraryIfNeed();
@@ -83,6 +200,23 @@ DocumentFile::~DocumentFile() {
     if (pdfDocument != nullptr) {
         FPDF_CloseDocument(pdfDocument);
     }
+    if (avail != nullptr) {
+        FPDFAvail_Destroy(avail);
+    }
+    // pdfium reads the content until the document is closed
+    delete[] ownedData;
+    if (mapping != nullptr) {
+        munmap(mapping, mappingSize);
+    }
+    for (IoBlock &block : blocks) {
+        free(block.data);
+    }
+    if (source != nullptr) {
+        JNIEnv *env = nullptr;
+        if (javaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) == JNI_OK) {
+            env->DeleteGlobalRef(source);
+        }
+    }
 
     destroyLibraryIfNeed();
 }
@@ -249,54 +383,169 @@ jobject NewTocEntry(JNIEnv *env, const PdfDoc::TOCEntry &entry) {
     return javaTOCEntry;
 }
 
-uint16_t rgbTo565(rgb *color) {
-    return ((color->red >> 3) << 11) | ((color->green >> 2) << 5) | (color->blue >> 3);
+static void rgbBitmapTo565(void *source, int sourceStride, void *dest, AndroidBitmapInfo *info) {
+    BitmapConvert::rgbBitmapTo565(static_cast<const uint8_t *>(source), (size_t) sourceStride,
+                                  static_cast<uint8_t *>(dest), info->stride,
+                                  info->width, info->height);
+}
+
+extern "C" { //For JNI support
+
+/**
+ * Read exactly size bytes from the SeekableSource into the buffer, wrapped without copy.
+ * pdfium is called with the PdfiumCore lock held, always from a Java thread
+ */
+static bool readSource(DocumentFile *docFile, uint8_t *buffer, size_t size, off_t position) {
+    JNIEnv *env = nullptr;
+    if (javaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+        LOGE("Cannot read source from a thread not attached to the VM");
+        return false;
+    }
+    jobject dst = env->NewDirectByteBuffer(buffer, (jlong) size);
+    if (dst == nullptr) {
+        env->ExceptionClear();
+        return false;
+    }
+    bool success = true;
+    size_t done = 0;
+    while (done < size) {
+        docFile->counters.syscalls++;
+        // the source advances the position of dst
+        const jint readCount = env->CallIntMethod(docFile->source, sourceReadMethod,
+                                                  (jlong) (position + done), dst);
+        if (env->ExceptionCheck()) {
+            LOGE("Cannot read from source");
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+            success = false;
+            break;
+        }
+        if (readCount <= 0) {
+            LOGE("Unexpected end of source");
+            success = false;
+            break;
+        }
+        docFile->counters.bytesRead += readCount;
+        done += readCount;
+    }
+    env->DeleteLocalRef(dst);
+    return success;
 }
 
-void rgbBitmapTo565(void *source, int sourceStride, void *dest, AndroidBitmapInfo *info) {
-    rgb *srcLine;
-    uint16_t *dstLine;
-    int y, x;
-    for (y = 0; y < info->height; y++) {
-        srcLine = (rgb *) source;
-        dstLine = (uint16_t *) dest;
-        for (x = 0; x < info->width; x++) {
-            dstLine[x] = rgbTo565(&srcLine[x]);
+/**
+ * Read exactly size bytes, pread may return less
+ */
+static bool readFully(DocumentFile *docFile, uint8_t *buffer, size_t size, off_t position) {
+    if (docFile->source != nullptr) {
+        return readSource(docFile, buffer, size, position);
+    }
+    while (size > 0) {
+        docFile->counters.syscalls++;
+        const ssize_t readCount = pread(docFile->fileFd, buffer, size, docFile->fileOffset + position);
+        if (readCount < 0 && errno == EINTR) {
+            continue;
         }
-        source = (char *) source + sourceStride;
-        dest = (char *) dest + info->stride;
+        if (readCount <= 0) {
+            LOGE("Cannot read from file descriptor. Error:%d", errno);
+            return false;
+        }
+        docFile->counters.bytesRead += readCount;
+        buffer += readCount;
+        position += readCount;
+        size -= readCount;
     }
+    return true;
 }
 
-extern "C" { //For JNI support
+/**
+ * @return the cached block starting at the given aligned offset, read if needed
+ */
+static IoBlock *getCachedBlock(DocumentFile *docFile, off_t offset) {
+    IoBlock *victim = &docFile->blocks[0];
+    for (IoBlock &block : docFile->blocks) {
+        if (block.offset == offset) {
+            block.lastUse = ++docFile->blockClock;
+            return &block;
+        }
+        if (block.lastUse < victim->lastUse) {
+            victim = &block;
+        }
+    }
+    if (victim->data == nullptr) {
+        victim->data = static_cast<uint8_t *>(malloc(IO_BLOCK_SIZE));
+        if (victim->data == nullptr) {
+            return nullptr;
+        }
+    }
+    const size_t length = std::min(IO_BLOCK_SIZE, docFile->fileSize - (size_t) offset);
+    victim->offset = -1;
+    if (!readFully(docFile, victim->data, length, offset)) {
+        return nullptr;
+    }
+    victim->offset = offset;
+    victim->length = length;
+    victim->lastUse = ++docFile->blockClock;
+    return victim;
+}
 
 static int getBlock(void *param, unsigned long position, unsigned char *outBuffer,
                     unsigned long size) {
-    const int fd = reinterpret_cast<intptr_t>(param);
-    const int readCount = pread(fd, outBuffer, size, (off_t) position);
-    if (readCount < 0) {
-        LOGE("Cannot read from file descriptor. Error:%d", errno);
+    auto *docFile = static_cast<DocumentFile *>(param);
+    if (position + size > docFile->fileSize || position + size < position) {
         return 0;
     }
+    docFile->counters.requests++;
+    docFile->counters.requestedBytes += size;
+
+    if (docFile->ioMode == IO_MMAP && docFile->mapped != nullptr) {
+        memcpy(outBuffer, docFile->mapped + position, size);
+        return 1;
+    }
+    if (docFile->ioMode != IO_BLOCK_CACHE || size >= IO_BLOCK_SIZE) {
+        // large reads would only evict the cached blocks
+        return readFully(docFile, outBuffer, size, (off_t) position) ? 1 : 0;
+    }
+    while (size > 0) {
+        const off_t offset = (off_t) (position - position % IO_BLOCK_SIZE);
+        IoBlock *block = getCachedBlock(docFile, offset);
+        if (block == nullptr) {
+            return 0;
+        }
+        const size_t start = position - offset;
+        const size_t count = std::min((size_t) size, block->length - start);
+        memcpy(outBuffer, block->data + start, count);
+        outBuffer += count;
+        position += count;
+        size -= count;
+    }
     return 1;
 }
 
-#pragma clang diagnostic push
-#pragma ide diagnostic ignored "MemoryLeak"
-JNI_FUNC(jlong, PdfiumCore, nativeOpenDocument)(JNI_ARGS, jint fd, jstring password) {
+/**
+ * Throw the exception matching the last pdfium error, after a document failed to load
+ */
+static void throwLoadError(JNIEnv *env) {
+    const long errorNum = (long) FPDF_GetLastError();
+    if (errorNum == FPDF_ERR_PASSWORD) {
+        jniThrowException(env, "com/vivlio/android/pdfium/PdfPasswordException",
+                          "Password required or incorrect password.");
+    } else {
+        char *error = getErrorDescription(errorNum);
+        jniThrowExceptionFmt(env, "java/io/IOException",
+                             "cannot create document: %s", error);
 
-    auto fileLength = (size_t) getFileSize(fd);
-    if (fileLength <= 0) {
-        jniThrowException(env, "java/io/IOException",
-                          "File is empty");
-        return -1;
+        free(error);
     }
+}
 
-    auto *docFile = new DocumentFile(fd, fileLength);
-
+/**
+ * Load the document read by getBlock, docFile is deleted on failure
+ */
+static jlong loadCustomDocument(JNIEnv *env, DocumentFile *docFile, jstring password) {
+    // pdfium keeps a copy of the loader, its parameter lives until the document is closed
     FPDF_FILEACCESS loader;
-    loader.m_FileLen = fileLength;
-    loader.m_Param = reinterpret_cast<void *>(intptr_t(fd));
+    loader.m_FileLen = docFile->fileSize;
+    loader.m_Param = docFile;
     loader.m_GetBlock = &getBlock;
 
     const char *cPassword = nullptr;
@@ -312,47 +561,223 @@ JNI_FUNC(jlong, PdfiumCore, nativeOpenDocument)(JNI_ARGS, jint fd, jstring passw
 
     if (!document) {
         delete docFile;
-        const long errorNum = (long) FPDF_GetLastError();
-        if (errorNum == FPDF_ERR_PASSWORD) {
-            jniThrowException(env, "com/vivlio/android/pdfium/PdfPasswordException",
-                              "Password required or incorrect password.");
-        } else {
-            char *error = getErrorDescription(errorNum);
-            jniThrowExceptionFmt(env, "java/io/IOException",
-                                 "cannot create document: %s", error);
-
-            free(error);
-        }
+        throwLoadError(env);
         return -1;
     }
     docFile->pdfDocument = document;
     return reinterpret_cast<jlong>(docFile);
 }
-#pragma clang diagnostic pop
 
 #pragma clang diagnostic push
 #pragma ide diagnostic ignored "MemoryLeak"
-JNI_FUNC(jlong, PdfiumCore, nativeOpenMemDocument)(JNI_ARGS, jbyteArray data, jstring password) {
-    auto *docFile = new DocumentFile();
+JNI_FUNC(jlong, PdfiumCore, nativeOpenDocument)(JNI_ARGS, jint fd, jlong offset, jlong length,
+                                                jstring password, jint ioMode) {
+
+    const long totalLength = getFileSize(fd);
+    if (offset < 0 || offset > totalLength) {
+        jniThrowException(env, "java/io/IOException",
+                          "Invalid document offset");
+        return -1;
+    }
+    auto fileLength = (size_t) (length >= 0 ? std::min((long) length, totalLength - (long) offset)
+                                            : totalLength - (long) offset);
+    if (fileLength <= 0) {
+        jniThrowException(env, "java/io/IOException",
+                          "File is empty");
+        return -1;
+    }
+
+    auto *docFile = new DocumentFile(fd, fileLength);
+    docFile->fileOffset = (off_t) offset;
+    docFile->ioMode = ioMode;
+    if (ioMode == IO_MMAP) {
+        docFile->counters.syscalls++;
+        // mappings start at a page boundary
+        const off_t pageSize = sysconf(_SC_PAGESIZE);
+        const off_t mappingOffset = docFile->fileOffset - docFile->fileOffset % pageSize;
+        const size_t mappingSize = fileLength + (size_t) (docFile->fileOffset - mappingOffset);
+        void *mapping = mmap(nullptr, mappingSize, PROT_READ, MAP_PRIVATE, fd, mappingOffset);
+        if (mapping != MAP_FAILED) {
+            docFile->mapping = mapping;
+            docFile->mappingSize = mappingSize;
+            docFile->mapped = static_cast<uint8_t *>(mapping) + (docFile->fileOffset - mappingOffset);
+        } else {
+            // not mappable, a pipe for instance
+            LOGE("Cannot map file, reading it directly. Error:%d", errno);
+            docFile->ioMode = IO_DIRECT;
+        }
+    }
+
+    return loadCustomDocument(env, docFile, password);
+}
+#pragma clang diagnostic pop
+
+/**
+ * Cache the methods of SeekableSource and ProgressiveSource called back by pdfium
+ *
+ * @return false with an exception pending if they cannot be found
+ */
+static bool cacheSourceMethods(JNIEnv *env) {
+    if (sourceAddSegmentMethod != nullptr) {
+        return true;
+    }
+    jclass sourceClass = env->FindClass("com/vivlio/android/pdfium/SeekableSource");
+    if (sourceClass == nullptr) {
+        return false;
+    }
+    sourceReadMethod = env->GetMethodID(sourceClass, "read", "(JLjava/nio/ByteBuffer;)I");
+    env->DeleteLocalRef(sourceClass);
+    jclass progressiveClass = env->FindClass("com/vivlio/android/pdfium/ProgressiveSource");
+    if (sourceReadMethod == nullptr || progressiveClass == nullptr) {
+        return false;
+    }
+    sourceIsDataAvailableMethod = env->GetMethodID(progressiveClass, "isDataAvailable", "(JJ)Z");
+    jmethodID addSegmentMethod = env->GetMethodID(progressiveClass, "addSegment", "(JJ)V");
+    env->DeleteLocalRef(progressiveClass);
+    if (sourceIsDataAvailableMethod == nullptr || addSegmentMethod == nullptr) {
+        return false;
+    }
+    env->GetJavaVM(&javaVm);
+    // set last, the other methods are cached once it is
+    sourceAddSegmentMethod = addSegmentMethod;
+    return true;
+}
+
+JNI_FUNC(jlong, PdfiumCore, nativeOpenSeekableDocument)(JNI_ARGS, jobject source, jlong size,
+                                                        jstring password) {
+    if (size <= 0) {
+        jniThrowException(env, "java/io/IOException",
+                          "Source is empty");
+        return -1;
+    }
+    if (!cacheSourceMethods(env)) {
+        return -1;
+    }
+
+    auto *docFile = new DocumentFile(-1, (size_t) size);
+    docFile->source = env->NewGlobalRef(source);
+    // a call to the source costs far more than a pread, read it by blocks
+    docFile->ioMode = IO_BLOCK_CACHE;
+    return loadCustomDocument(env, docFile, password);
+}
+
+static FPDF_BOOL isDataAvail(FX_FILEAVAIL *pThis, size_t offset, size_t size) {
+    DocumentFile *docFile = reinterpret_cast<FileAvail *>(pThis)->docFile;
+    JNIEnv *env = nullptr;
+    if (javaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+        return false;
+    }
+    const jboolean available = env->CallBooleanMethod(docFile->source, sourceIsDataAvailableMethod,
+                                                      (jlong) offset, (jlong) size);
+    if (env->ExceptionCheck()) {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+        return false;
+    }
+    return available;
+}
+
+static void addSegment(FX_DOWNLOADHINTS *pThis, size_t offset, size_t size) {
+    DocumentFile *docFile = reinterpret_cast<DownloadHints *>(pThis)->docFile;
+    JNIEnv *env = nullptr;
+    if (javaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+        return;
+    }
+    env->CallVoidMethod(docFile->source, sourceAddSegmentMethod, (jlong) offset, (jlong) size);
+    if (env->ExceptionCheck()) {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
+JNI_FUNC(jlong, PdfiumCore, nativeOpenProgressiveDocument)(JNI_ARGS, jobject source, jlong size) {
+    if (size <= 0) {
+        jniThrowException(env, "java/io/IOException",
+                          "Source is empty");
+        return -1;
+    }
+    if (!cacheSourceMethods(env)) {
+        return -1;
+    }
+
+    auto *docFile = new DocumentFile(-1, (size_t) size);
+    docFile->source = env->NewGlobalRef(source);
+    // pdfium only reads the ranges it checked with isDataAvail, a block past them may not have arrived
+    docFile->ioMode = IO_DIRECT;
+    docFile->fileAccess.m_FileLen = docFile->fileSize;
+    docFile->fileAccess.m_Param = docFile;
+    docFile->fileAccess.m_GetBlock = &getBlock;
+    docFile->fileAvail.fileAvail.version = 1;
+    docFile->fileAvail.fileAvail.IsDataAvail = &isDataAvail;
+    docFile->fileAvail.docFile = docFile;
+    docFile->avail = FPDFAvail_Create(&docFile->fileAvail.fileAvail, &docFile->fileAccess);
+    if (docFile->avail == nullptr) {
+        delete docFile;
+        jniThrowException(env, "java/io/IOException",
+                          "Cannot check document availability");
+        return -1;
+    }
+    return reinterpret_cast<jlong>(docFile);
+}
 
-    const char *cpassword = nullptr;
+JNI_FUNC(jint, PdfiumCore, nativeIsDocAvail)(JNI_ARGS, jlong docPtr) {
+    auto *docFile = reinterpret_cast<DocumentFile *>(docPtr);
+    DownloadHints hints{{1, &addSegment}, docFile};
+    return FPDFAvail_IsDocAvail(docFile->avail, &hints.hints);
+}
+
+JNI_FUNC(void, PdfiumCore, nativeGetAvailDocument)(JNI_ARGS, jlong docPtr, jstring password) {
+    auto *docFile = reinterpret_cast<DocumentFile *>(docPtr);
+    const char *cPassword = nullptr;
     if (password != nullptr) {
-        cpassword = env->GetStringUTFChars(password, nullptr);
+        cPassword = env->GetStringUTFChars(password, nullptr);
     }
 
-    jbyte *cData = env->GetByteArrayElements(data, nullptr);
-    int size = env->GetArrayLength(data);
-    docFile->fileSize = size;
+    FPDF_DOCUMENT document = FPDFAvail_GetDocument(docFile->avail, cPassword);
 
+    if (cPassword != nullptr) {
+        env->ReleaseStringUTFChars(password, cPassword);
+    }
+    if (!document) {
+        // the document is closed by the caller
+        throwLoadError(env);
+        return;
+    }
+    docFile->pdfDocument = document;
+}
 
-    auto *cDataCopy = new jbyte[size];
-    memcpy(cDataCopy, cData, size);
-    FPDF_DOCUMENT document = FPDF_LoadMemDocument(reinterpret_cast<const void *>(cDataCopy),
-                                                  size, cpassword);
-    env->ReleaseByteArrayElements(data, cData, JNI_ABORT);
+JNI_FUNC(jint, PdfiumCore, nativeIsPageAvail)(JNI_ARGS, jlong docPtr, jint pageIndex) {
+    auto *docFile = reinterpret_cast<DocumentFile *>(docPtr);
+    if (docFile->avail == nullptr) {
+        return PDF_DATA_AVAIL;
+    }
+    DownloadHints hints{{1, &addSegment}, docFile};
+    return FPDFAvail_IsPageAvail(docFile->avail, pageIndex, &hints.hints);
+}
 
-    if (cpassword != nullptr) {
-        env->ReleaseStringUTFChars(password, cpassword);
+JNI_FUNC(jint, PdfiumCore, nativeIsLinearized)(JNI_ARGS, jlong docPtr) {
+    auto *docFile = reinterpret_cast<DocumentFile *>(docPtr);
+    if (docFile->avail == nullptr) {
+        return PDF_LINEARIZATION_UNKNOWN;
+    }
+    return FPDFAvail_IsLinearized(docFile->avail);
+}
+
+/**
+ * Load a document from memory which must stay valid until the document is closed,
+ * docFile is deleted if the document cannot be loaded
+ */
+static jlong loadMemDocument(JNIEnv *env, DocumentFile *docFile, const void *data, size_t size,
+                             jstring password) {
+    const char *cPassword = nullptr;
+    if (password != nullptr) {
+        cPassword = env->GetStringUTFChars(password, nullptr);
+    }
+
+    FPDF_DOCUMENT document = FPDF_LoadMemDocument64(data, size, cPassword);
+
+    if (cPassword != nullptr) {
+        env->ReleaseStringUTFChars(password, cPassword);
     }
 
     if (!document) {
@@ -377,8 +802,56 @@ JNI_FUNC(jlong, PdfiumCore, nativeOpenMemDocument)(JNI_ARGS, jbyteArray data, js
 
     return reinterpret_cast<jlong>(docFile);
 }
-#pragma clang diagnostic pop
 
+JNI_FUNC(jlong, PdfiumCore, nativeOpenMemDocument)(JNI_ARGS, jbyteArray data, jint offset,
+                                                   jint size, jstring password) {
+    if (offset < 0 || size <= 0 || offset > env->GetArrayLength(data) - size) {
+        jniThrowException(env, "java/lang/IllegalArgumentException",
+                          "Invalid range");
+        return -1;
+    }
+    // single copy, straight from the Java array
+    auto *buffer = new(std::nothrow) jbyte[size];
+    if (buffer == nullptr) {
+        jniThrowException(env, "java/lang/OutOfMemoryError",
+                          "Cannot allocate document buffer");
+        return -1;
+    }
+    env->GetByteArrayRegion(data, offset, size, buffer);
+
+    auto *docFile = new DocumentFile();
+    docFile->fileSize = size;
+    docFile->ownedData = buffer;
+    return loadMemDocument(env, docFile, buffer, (size_t) size, password);
+}
+
+JNI_FUNC(jlong, PdfiumCore, nativeOpenDirectDocument)(JNI_ARGS, jobject buffer, jlong offset,
+                                                      jlong size, jstring password) {
+    auto *address = static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+    if (address == nullptr || offset < 0 || size <= 0
+        || offset + size > env->GetDirectBufferCapacity(buffer)) {
+        jniThrowException(env, "java/lang/IllegalArgumentException",
+                          "Not a direct buffer or invalid range");
+        return -1;
+    }
+
+    // the buffer is referenced by the Java document until it is closed
+    auto *docFile = new DocumentFile();
+    docFile->fileSize = (size_t) size;
+    return loadMemDocument(env, docFile, address + offset, (size_t) size, password);
+}
+
+
+JNI_FUNC(void, PdfiumCore, nativeGetIoStats)(JNI_ARGS, jlong docPtr, jlongArray stats) {
+    auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
+    const jlong values[] = {
+            (jlong) doc->counters.requests,
+            (jlong) doc->counters.requestedBytes,
+            (jlong) doc->counters.syscalls,
+            (jlong) doc->counters.bytesRead
+    };
+    env->SetLongArrayRegion(stats, 0, 4, values);
+}
 
 JNI_FUNC(void, PdfiumCore, nativeCloseDocument)(JNI_ARGS, jlong documentPtr) {
     auto *doc = reinterpret_cast<DocumentFile *>(documentPtr);
@@ -499,6 +972,95 @@ JNI_FUNC(jobject, PdfiumCore, nativeGetPageSizeByIndex)(JNI_ARGS, jlong docPtr,
     return env->NewObject(clazz, constructorID, widthInt, heightInt);
 }
 
+JNI_FUNC(jint, PdfiumCore, nativeGetPageSizesByIndex)(JNI_ARGS, jlong docPtr, jint fromIndex,
+                                                      jint count, jint dpi, jintArray sizes) {
+    auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
+    if (doc == nullptr) {
+        LOGE("Document is null");
+
+        jniThrowException(env, "java/lang/IllegalStateException",
+                          "Document is null");
+        return 0;
+    }
+
+    int pageCount = FPDF_GetPageCount(doc->pdfDocument);
+    if (fromIndex < 0 || count <= 0 || fromIndex >= pageCount) {
+        return 0;
+    }
+    count = std::min(count, pageCount - fromIndex);
+    if (env->GetArrayLength(sizes) < 2 * count) {
+        jniThrowException(env, "java/lang/IllegalArgumentException",
+                          "Sizes array is too small");
+        return 0;
+    }
+
+    std::vector<jint> buffer(2 * count);
+    for (int i = 0; i < count; i++) {
+        FS_SIZEF size;
+        if (!FPDF_GetPageSizeByIndexF(doc->pdfDocument, fromIndex + i, &size)) {
+            size.width = 0;
+            size.height = 0;
+        }
+        // same rounding as nativeGetPageSizeByIndex
+        buffer[2 * i] = (jint) ((double) size.width * dpi / 72);
+        buffer[2 * i + 1] = (jint) ((double) size.height * dpi / 72);
+    }
+    env->SetIntArrayRegion(sizes, 0, 2 * count, buffer.data());
+    return count;
+}
+
+JNI_FUNC(jint, PdfiumCore, nativeGetPagesText)(JNI_ARGS, jlong docPtr, jint fromIndex,
+                                              jint count, jobjectArray texts) {
+    auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
+    if (doc == nullptr) {
+        jniThrowException(env, "java/lang/IllegalStateException",
+                          "Document is null");
+        return 0;
+    }
+
+    int pageCount = FPDF_GetPageCount(doc->pdfDocument);
+    if (fromIndex < 0 || count <= 0 || fromIndex >= pageCount) {
+        return 0;
+    }
+    count = std::min(count, pageCount - fromIndex);
+    if (env->GetArrayLength(texts) < count) {
+        jniThrowException(env, "java/lang/IllegalArgumentException",
+                          "Texts array is too small");
+        return 0;
+    }
+
+    std::vector<unsigned short> buffer;
+    for (int i = 0; i < count; i++) {
+        // pages are loaded for the extraction only, the opened ones are left as they are
+        FPDF_PAGE page = FPDF_LoadPage(doc->pdfDocument, fromIndex + i);
+        FPDF_TEXTPAGE textPage = page != nullptr ? FPDFText_LoadPage(page) : nullptr;
+        jstring text = nullptr;
+        if (textPage != nullptr) {
+            const int charCount = FPDFText_CountChars(textPage);
+            if (charCount >= 0) {
+                buffer.resize((size_t) charCount + 1);
+                // the count includes the terminating null character
+                const int written = FPDFText_GetText(textPage, 0, charCount, buffer.data());
+                text = env->NewString(reinterpret_cast<const jchar *>(buffer.data()),
+                                      std::max(written - 1, 0));
+            }
+            FPDFText_ClosePage(textPage);
+        }
+        if (page != nullptr) {
+            FPDF_ClosePage(page);
+        }
+        if (env->ExceptionCheck()) {
+            // out of memory, the pages read so far are returned
+            return i;
+        }
+        env->SetObjectArrayElement(texts, i, text);
+        if (text != nullptr) {
+            env->DeleteLocalRef(text);
+        }
+    }
+    return count;
+}
+
 static void renderPageInternal(FPDF_PAGE page,
                                ANativeWindow_Buffer *windowBuffer,
                                int startX, int startY,
@@ -647,62 +1209,62 @@ JNI_FUNC(jstring, PdfiumCore, nativeGetTextPart)(JNI_ARGS, jlong textPtr, int st
     return ret;
 }
 
-JNI_FUNC(void, PdfiumCore, nativeRenderPageBitmap)(JNI_ARGS, jlong pagePtr, jobject bitmap,
-                                                   jint dpi, jint startX, jint startY,
-                                                   jint drawSizeHor, jint drawSizeVer,
-                                                   jboolean renderAnnot) {
-    if (!dpi) {
-        LOGD("NO DPI");
-    }
-
-    auto page = reinterpret_cast<FPDF_PAGE>(pagePtr);
-
-    if (page == nullptr || bitmap == nullptr) {
-        LOGE("Render page pointers invalid");
-        return;
-    }
+/**
+ * Bitmap locked for rendering, with the pdfium bitmap wrapping its pixels.
+ * RGB_565 bitmaps are rendered into the scratch buffer of the thread, converted when
+ * rendering is done. A target must be unlocked on the thread that locked it.
+ */
+struct RenderTarget {
+    AndroidBitmapInfo info{};
+    void *addr = nullptr;
+    void *tmp = nullptr;
+    int sourceStride = 0;
+    FPDF_BITMAP pdfBitmap = nullptr;
+};
 
-    AndroidBitmapInfo info;
+static bool lockRenderTarget(JNIEnv *env, jobject bitmap, jint startX, jint startY,
+                             jint drawSizeHor, jint drawSizeVer, RenderTarget *target) {
     int ret;
-    if ((ret = AndroidBitmap_getInfo(env, bitmap, &info)) < 0) {
+    if ((ret = AndroidBitmap_getInfo(env, bitmap, &target->info)) < 0) {
         LOGE("Fetching bitmap info failed: %s", strerror(ret * -1));
-        return;
+        return false;
     }
 
-    int canvasHorSize = (int) info.width;
-    int canvasVerSize = (int) info.height;
+    int canvasHorSize = (int) target->info.width;
+    int canvasVerSize = (int) target->info.height;
 
-    if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888 &&
-        info.format != ANDROID_BITMAP_FORMAT_RGB_565) {
+    if (target->info.format != ANDROID_BITMAP_FORMAT_RGBA_8888 &&
+        target->info.format != ANDROID_BITMAP_FORMAT_RGB_565) {
         LOGE("Bitmap format must be RGBA_8888 or RGB_565");
-        return;
+        return false;
     }
 
-    void *addr;
-    if ((ret = AndroidBitmap_lockPixels(env, bitmap, &addr)) != 0) {
+    if ((ret = AndroidBitmap_lockPixels(env, bitmap, &target->addr)) != 0) {
         LOGE("Locking bitmap failed: %s", strerror(ret * -1));
-        return;
+        return false;
     }
 
-    void *tmp;
     int format;
-    int sourceStride;
-    if (info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
-        tmp = malloc(canvasVerSize * canvasHorSize * sizeof(rgb));
-        sourceStride = canvasHorSize * (int) sizeof(rgb);
+    if (target->info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
+        target->sourceStride = canvasHorSize * BGR_PIXEL_SIZE;
+        target->tmp = acquireScratchBuffer((size_t) canvasVerSize * target->sourceStride);
+        if (target->tmp == nullptr) {
+            LOGE("Allocating render buffer failed");
+            AndroidBitmap_unlockPixels(env, bitmap);
+            return false;
+        }
         format = FPDFBitmap_BGR;
     } else {
-        tmp = addr;
-        sourceStride = (int) info.stride;
+        target->tmp = target->addr;
+        target->sourceStride = (int) target->info.stride;
         format = FPDFBitmap_BGRA;
     }
 
-    FPDF_BITMAP pdfBitmap = FPDFBitmap_CreateEx((int) canvasHorSize, (int) canvasVerSize,
-                                                format, tmp, (int) sourceStride);
-
+    target->pdfBitmap = FPDFBitmap_CreateEx(canvasHorSize, canvasVerSize,
+                                            format, target->tmp, target->sourceStride);
 
     if (drawSizeHor < canvasHorSize || drawSizeVer < canvasVerSize) {
-        FPDFBitmap_FillRect(pdfBitmap, 0, 0, canvasHorSize, canvasVerSize,
+        FPDFBitmap_FillRect(target->pdfBitmap, 0, 0, canvasHorSize, canvasVerSize,
                             0x848484FF); //Gray
     }
 
@@ -710,28 +1272,202 @@ JNI_FUNC(void, PdfiumCore, nativeRenderPageBitmap)(JNI_ARGS, jlong pagePtr, jobj
     int baseVerSize = (canvasVerSize < drawSizeVer) ? canvasVerSize : (int) drawSizeVer;
     int baseX = (startX < 0) ? 0 : (int) startX;
     int baseY = (startY < 0) ? 0 : (int) startY;
-    int flags = FPDF_REVERSE_BYTE_ORDER;
 
+    FPDFBitmap_FillRect(target->pdfBitmap, baseX, baseY, baseHorSize, baseVerSize,
+                        0xFFFFFFFF); //White
+    return true;
+}
+
+/**
+ * Convert the rendered pixels if needed, then release the buffers and unlock the bitmap
+ */
+static void unlockRenderTarget(JNIEnv *env, jobject bitmap, RenderTarget *target, bool rendered) {
+    if (target->info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
+        if (rendered) {
+            rgbBitmapTo565(target->tmp, target->sourceStride, target->addr, &target->info);
+        }
+        releaseScratchBuffer(target->tmp);
+    }
+    target->tmp = nullptr;
+    if (target->pdfBitmap != nullptr) {
+        FPDFBitmap_Destroy(target->pdfBitmap);
+        target->pdfBitmap = nullptr;
+    }
+    AndroidBitmap_unlockPixels(env, bitmap);
+}
+
+static int renderFlags(jboolean renderAnnot) {
+    int flags = FPDF_REVERSE_BYTE_ORDER;
     if (renderAnnot) {
         flags |= FPDF_ANNOT;
     }
+    return flags;
+}
 
-    FPDFBitmap_FillRect(pdfBitmap, baseX, baseY, baseHorSize, baseVerSize,
-                        0xFFFFFFFF); //White
+JNI_FUNC(void, PdfiumCore, nativeRenderPageBitmap)(JNI_ARGS, jlong pagePtr, jobject bitmap,
+                                                   jint dpi, jint startX, jint startY,
+                                                   jint drawSizeHor, jint drawSizeVer,
+                                                   jboolean renderAnnot) {
+    if (!dpi) {
+        LOGD("NO DPI");
+    }
 
-    FPDF_RenderPageBitmap(pdfBitmap, page,
+    auto page = reinterpret_cast<FPDF_PAGE>(pagePtr);
+
+    if (page == nullptr || bitmap == nullptr) {
+        LOGE("Render page pointers invalid");
+        return;
+    }
+
+    RenderTarget target;
+    if (!lockRenderTarget(env, bitmap, startX, startY, drawSizeHor, drawSizeVer, &target)) {
+        return;
+    }
+
+    FPDF_RenderPageBitmap(target.pdfBitmap, page,
                           startX, startY,
                           (int) drawSizeHor,
                           (int) drawSizeVer,
                           0,
-                          flags);
+                          renderFlags(renderAnnot));
 
-    if (info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
-        rgbBitmapTo565(tmp, sourceStride, addr, &info);
-        free(tmp);
+    unlockRenderTarget(env, bitmap, &target, true);
+}
+
+static int64_t monotonicNanos() {
+    struct timespec now{};
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (int64_t) now.tv_sec * 1000000000LL + now.tv_nsec;
+}
+
+/**
+ * Asks pdfium to pause once the time slice of the current step is over
+ */
+struct RenderPause : public IFSDK_PAUSE {
+    int64_t deadline = 0;
+};
+
+static FPDF_BOOL needToPauseNow(IFSDK_PAUSE *pause) {
+    return monotonicNanos() >= static_cast<RenderPause *>(pause)->deadline;
+}
+
+/**
+ * State of a progressive render, kept between the steps driven from Java.
+ * The bitmap stays locked from start to close.
+ */
+struct ProgressiveRender {
+    FPDF_PAGE page = nullptr;
+    jobject bitmap = nullptr;
+    RenderTarget target;
+    RenderPause pause;
+    int startX = 0;
+    int startY = 0;
+    int drawSizeHor = 0;
+    int drawSizeVer = 0;
+    int flags = 0;
+    bool started = false;
+    bool done = false;
+};
+
+JNI_FUNC(jlong, PdfiumCore, nativeRenderPageBitmapStart)(JNI_ARGS, jlong pagePtr, jobject bitmap,
+                                                         jint startX, jint startY,
+                                                         jint drawSizeHor, jint drawSizeVer,
+                                                         jboolean renderAnnot) {
+    auto page = reinterpret_cast<FPDF_PAGE>(pagePtr);
+
+    if (page == nullptr || bitmap == nullptr) {
+        LOGE("Render page pointers invalid");
+        return 0;
     }
 
-    AndroidBitmap_unlockPixels(env, bitmap);
+    auto *render = new ProgressiveRender();
+    if (!lockRenderTarget(env, bitmap, startX, startY, drawSizeHor, drawSizeVer, &render->target)) {
+        delete render;
+        return 0;
+    }
+    render->page = page;
+    render->bitmap = env->NewGlobalRef(bitmap);
+    render->startX = startX;
+    render->startY = startY;
+    render->drawSizeHor = drawSizeHor;
+    render->drawSizeVer = drawSizeVer;
+    render->flags = renderFlags(renderAnnot);
+    render->pause.version = 1;
+    render->pause.NeedToPauseNow = &needToPauseNow;
+    render->pause.user = nullptr;
+    return reinterpret_cast<jlong>(render);
+}
+
+/**
+ * Render for about stepNanos, returns one of the FPDF_RENDER_* status
+ */
+JNI_FUNC(jint, PdfiumCore, nativeRenderPageBitmapContinue)(JNI_ARGS, jlong renderPtr,
+                                                           jlong stepNanos) {
+    auto *render = reinterpret_cast<ProgressiveRender *>(renderPtr);
+    if (render == nullptr) {
+        return FPDF_RENDER_FAILED;
+    }
+    if (render->done) {
+        return FPDF_RENDER_DONE;
+    }
+
+    render->pause.deadline = monotonicNanos() + stepNanos;
+    int status;
+    if (!render->started) {
+        render->started = true;
+        status = FPDF_RenderPageBitmap_Start(render->target.pdfBitmap, render->page,
+                                             render->startX, render->startY,
+                                             render->drawSizeHor, render->drawSizeVer,
+                                             0, render->flags, &render->pause);
+    } else {
+        status = FPDF_RenderPage_Continue(render->page, &render->pause);
+    }
+
+    if (status == FPDF_RENDER_DONE &&
+        render->target.info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
+        rgbBitmapTo565(render->target.tmp, render->target.sourceStride,
+                       render->target.addr, &render->target.info);
+    }
+    render->done = status == FPDF_RENDER_DONE;
+    return status;
+}
+
+/**
+ * Release a progressive render, finished or not.
+ * pageOpened must be false if the page was closed in the meantime,
+ * closing the page already released its render context.
+ */
+JNI_FUNC(void, PdfiumCore, nativeRenderPageBitmapClose)(JNI_ARGS, jlong renderPtr,
+                                                        jboolean pageOpened) {
+    auto *render = reinterpret_cast<ProgressiveRender *>(renderPtr);
+    if (render == nullptr) {
+        return;
+    }
+    if (render->started && pageOpened) {
+        FPDF_RenderPage_Close(render->page);
+    }
+    unlockRenderTarget(env, render->bitmap, &render->target, false);
+    env->DeleteGlobalRef(render->bitmap);
+    delete render;
+}
+
+JNI_FUNC(jbyteArray, PdfiumCore, nativeGetFileIdentifier)(JNI_ARGS, jlong docPtr, jint idType) {
+    auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
+    auto type = static_cast<FPDF_FILEIDTYPE>(idType);
+
+    // length includes the NUL terminator
+    unsigned long bufferLen = FPDF_GetFileIdentifier(doc->pdfDocument, type, nullptr, 0);
+    if (bufferLen <= 1) {
+        return nullptr;
+    }
+    std::vector<jbyte> buffer(bufferLen);
+    FPDF_GetFileIdentifier(doc->pdfDocument, type, buffer.data(), bufferLen);
+
+    jbyteArray result = env->NewByteArray((jsize) bufferLen - 1);
+    if (result != nullptr) {
+        env->SetByteArrayRegion(result, 0, (jsize) bufferLen - 1, buffer.data());
+    }
+    return result;
 }
 
 //Start Bookmarks
@@ -752,6 +1488,22 @@ JNI_FUNC(jstring, PdfiumCore, nativeGetDocumentMetaText)(JNI_ARGS, jlong docPtr,
     return env->NewString((jchar *) text.c_str(), (int) bufferLen / 2 - 1);
 }
 
+JNI_FUNC(jstring, PdfiumCore, nativeGetPageLabel)(JNI_ARGS, jlong docPtr, jint pageIndex) {
+    auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
+
+    // UTF-16LE label including the terminating null character, 0 if the page has no label
+    unsigned long bufferLen = FPDF_GetPageLabel(doc->pdfDocument, pageIndex, nullptr, 0);
+    if (bufferLen == 0) {
+        return nullptr;
+    }
+    if (bufferLen <= 2) {
+        return env->NewStringUTF("");
+    }
+    std::vector<jchar> label(bufferLen / 2);
+    FPDF_GetPageLabel(doc->pdfDocument, pageIndex, label.data(), bufferLen);
+    return env->NewString(label.data(), (jsize) (bufferLen / 2 - 1));
+}
+
 JNI_FUNC(jobject, PdfiumCore, nativeGetFirstChildBookmark)(JNI_ARGS, jlong docPtr,
                                                            jobject bookmarkPtr) {
     auto *doc = reinterpret_cast<DocumentFile *>(docPtr);
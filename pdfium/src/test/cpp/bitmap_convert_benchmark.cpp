@@ -0,0 +1,125 @@
+// Host benchmark of the BGR to RGB_565 conversion done after rendering RGB_565 bitmaps.
+//
+// Build and run from this directory:
+//   g++ -std=c++17 -O2 -I../../main/jni bitmap_convert_benchmark.cpp -o /tmp/bitmap_convert_benchmark
+//   /tmp/bitmap_convert_benchmark
+//
+// "legacy" is the per pixel conversion nativeRenderPageBitmap used before, including
+// the malloc/free of the render buffer done for every bitmap.
+// "current" is BitmapConvert::rgbBitmapTo565 writing from a reused buffer.
+
+#include "bitmap-convert.h"
+
+#include <chrono>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <vector>
+
+namespace {
+
+    struct rgb {
+        uint8_t red;
+        uint8_t green;
+        uint8_t blue;
+    };
+
+    struct BitmapInfo {
+        uint32_t width;
+        uint32_t height;
+        uint32_t stride;
+    };
+
+    uint16_t rgbTo565(rgb *color) {
+        return ((color->red >> 3) << 11) | ((color->green >> 2) << 5) | (color->blue >> 3);
+    }
+
+    void legacyRgbBitmapTo565(void *source, int sourceStride, void *dest, BitmapInfo *info) {
+        rgb *srcLine;
+        uint16_t *dstLine;
+        int y, x;
+        for (y = 0; y < info->height; y++) {
+            srcLine = (rgb *) source;
+            dstLine = (uint16_t *) dest;
+            for (x = 0; x < info->width; x++) {
+                dstLine[x] = rgbTo565(&srcLine[x]);
+            }
+            source = (char *) source + sourceStride;
+            dest = (char *) dest + info->stride;
+        }
+    }
+
+    // Keeps the compiler from dropping the conversions
+    volatile uint32_t sink;
+
+    template<typename F>
+    double nanosPerMegapixel(size_t pixels, int iterations, F convert) {
+        convert();
+        auto start = std::chrono::steady_clock::now();
+        for (int i = 0; i < iterations; i++) {
+            convert();
+        }
+        auto elapsed = std::chrono::duration<double, std::nano>(
+                std::chrono::steady_clock::now() - start).count();
+        return elapsed / iterations / ((double) pixels / 1e6);
+    }
+
+    bool run(uint32_t width, uint32_t height) {
+        BitmapInfo info{width, height, width * 2};
+        size_t pixels = (size_t) width * height;
+        size_t sourceStride = width * 3;
+        int iterations = (int) (200000000 / pixels) + 1;
+
+        std::vector<uint8_t> source(sourceStride * height);
+        uint32_t seed = 12345;
+        for (uint8_t &value : source) {
+            seed = seed * 1103515245 + 12345;
+            value = (uint8_t) (seed >> 16);
+        }
+        std::vector<uint8_t> legacy(info.stride * height);
+        std::vector<uint8_t> current(info.stride * height);
+
+        double legacyNanos = nanosPerMegapixel(pixels, iterations, [&]() {
+            // the render buffer was allocated for every bitmap
+            void *tmp = malloc(source.size());
+            memcpy(tmp, source.data(), source.size());
+            legacyRgbBitmapTo565(tmp, (int) sourceStride, legacy.data(), &info);
+            free(tmp);
+            sink = sink + legacy[0];
+        });
+        std::vector<uint8_t> scratch(source);
+        double currentNanos = nanosPerMegapixel(pixels, iterations, [&]() {
+            memcpy(scratch.data(), source.data(), source.size());
+            BitmapConvert::rgbBitmapTo565(scratch.data(), sourceStride,
+                                          current.data(), info.stride, width, height);
+            sink = sink + current[0];
+        });
+        double legacyConvertNanos = nanosPerMegapixel(pixels, iterations, [&]() {
+            legacyRgbBitmapTo565(source.data(), (int) sourceStride, legacy.data(), &info);
+            sink = sink + legacy[0];
+        });
+        double currentConvertNanos = nanosPerMegapixel(pixels, iterations, [&]() {
+            BitmapConvert::rgbBitmapTo565(source.data(), sourceStride,
+                                          current.data(), info.stride, width, height);
+            sink = sink + current[0];
+        });
+
+        bool same = legacy == current;
+        printf("%4ux%-4u conversion only: legacy %8.0f ns/MP, current %8.0f ns/MP (x%.1f)\n",
+               width, height, legacyConvertNanos, currentConvertNanos,
+               legacyConvertNanos / currentConvertNanos);
+        printf("%4ux%-4u with buffer:     legacy %8.0f ns/MP, current %8.0f ns/MP (x%.1f)%s\n",
+               width, height, legacyNanos, currentNanos, legacyNanos / currentNanos,
+               same ? "" : " OUTPUT MISMATCH");
+        return same;
+    }
+}
+
+int main() {
+    bool same = true;
+    // part of 256px at the default thumbnail ratio, default part, large part
+    same &= run(77, 77);
+    same &= run(256, 256);
+    same &= run(1080, 1920);
+    return same ? 0 : 1;
+}
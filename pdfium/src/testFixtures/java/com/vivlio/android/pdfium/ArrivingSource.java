@@ -0,0 +1,69 @@
+package com.vivlio.android.pdfium;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ProgressiveSource} standing for a download: the content is revealed by chunks,
+ * one more each time pdfium waits for data, at most maxChunks of them
+ */
+public class ArrivingSource implements ProgressiveSource, Closeable {
+
+    private final byte[] content;
+    private final int chunkSize;
+    private final int maxChunks;
+
+    public volatile int available;
+    public volatile int waits;
+    public volatile int readsPastAvailable;
+    public volatile boolean closed;
+
+    public ArrivingSource(byte[] content, int chunkSize, int maxChunks) {
+        this.content = content;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        available = Math.min(chunkSize, content.length);
+    }
+
+    @Override
+    public long size() {
+        return content.length;
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst) {
+        if (position >= available) {
+            readsPastAvailable++;
+            return -1;
+        }
+        int count = (int) Math.min(dst.remaining(), available - position);
+        dst.put(content, (int) position, count);
+        return count;
+    }
+
+    @Override
+    public boolean isDataAvailable(long position, long size) {
+        return position + size <= available;
+    }
+
+    @Override
+    public void addSegment(long position, long size) {
+    }
+
+    @Override
+    public void waitForData(long timeoutMillis) {
+        waits++;
+        if (waits < maxChunks) {
+            available = Math.min(available + chunkSize, content.length);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public void arriveAll() {
+        available = content.length;
+    }
+}
@@ -0,0 +1,178 @@
+package com.vivlio.android.pdfium;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic documents written for the tests of pdfium and of the viewer
+ */
+public final class TestDocuments {
+
+    /**
+     * Size of the content stream of each page of the linearized documents, they span
+     * several 64 KB blocks and their first page several chunks of an {@link ArrivingSource}
+     */
+    public static final int PAGE_CONTENT_SIZE = 8 * 1024;
+
+    private TestDocuments() {
+    }
+
+    /**
+     * Minimal document with empty pages in a single page tree node
+     *
+     * @param pageSizes media boxes of the pages, in points, used in turn
+     */
+    public static byte[] createDocument(int pageCount, int[][] pageSizes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pageCount * 96);
+        int objectCount = pageCount + 3;
+        int[] offsets = new int[objectCount];
+
+        write(out, "%PDF-1.7\n");
+        offsets[1] = out.size();
+        write(out, "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        offsets[2] = out.size();
+        StringBuilder kids = new StringBuilder(pageCount * 8);
+        for (int page = 0; page < pageCount; page++) {
+            kids.append(page + 3).append(" 0 R ");
+        }
+        write(out, "2 0 obj\n<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>\nendobj\n");
+        for (int page = 0; page < pageCount; page++) {
+            int[] size = pageSizes[page % pageSizes.length];
+            offsets[page + 3] = out.size();
+            write(out, (page + 3) + " 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 "
+                    + size[0] + " " + size[1] + "] >>\nendobj\n");
+        }
+
+        int xrefOffset = out.size();
+        StringBuilder xref = new StringBuilder(objectCount * 20 + 32);
+        xref.append("xref\n0 ").append(objectCount).append('\n');
+        xref.append("0000000000 65535 f \n");
+        for (int object = 1; object < objectCount; object++) {
+            xref.append(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[object]));
+        }
+        write(out, xref.toString());
+        write(out, "trailer\n<< /Size " + objectCount + " /Root 1 0 R >>\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+        return out.toByteArray();
+    }
+
+    /**
+     * @see #createLinearizedDocument(int, String)
+     */
+    public static byte[] createLinearizedDocument(int pageCount) {
+        return createLinearizedDocument(pageCount, null);
+    }
+
+    /**
+     * Minimal linearized document whose pages are filled with blue, see ISO 32000-1 annex F:
+     * the linearization dictionary, the cross reference table of the first page, the catalog,
+     * the page tree, an empty hint stream and the first page come first, then the other pages
+     * and the main cross reference table. Offsets are written on 10 digits and filled in
+     * once known.
+     *
+     * @param fileId both parts of the file identifier in hexadecimal, null for none
+     */
+    public static byte[] createLinearizedDocument(int pageCount, String fileId) {
+        // 1 linearization dictionary, 2 catalog, 3 page tree, 4 hint stream,
+        // then a page and its content for each page
+        int firstPageSectionSize = 7;
+        int objectCount = 5 + 2 * pageCount;
+        int[] offsets = new int[objectCount];
+        StringBuilder padding = new StringBuilder(PAGE_CONTENT_SIZE);
+        while (padding.length() < PAGE_CONTENT_SIZE) {
+            padding.append("% padding to spread the pages over several blocks\n");
+        }
+        String pageContent = "0 0 1 rg 0 0 612 792 re f\n" + padding;
+        String id = fileId != null ? " /ID [<" + fileId + "> <" + fileId + ">]" : "";
+
+        String placeholder = format(0);
+        StringBuilder kids = new StringBuilder(pageCount * 8);
+        for (int page = 0; page < pageCount; page++) {
+            kids.append(5 + 2 * page).append(" 0 R ");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pageCount * (PAGE_CONTENT_SIZE + 256));
+        write(out, "%PDF-1.7\n%\u00e2\u00e3\u00cf\u00d3\n");
+        offsets[1] = out.size();
+        write(out, "1 0 obj\n<< /Linearized 1 /L " + placeholder + " /H [" + placeholder + " " + placeholder
+                + "] /O 5 /E " + placeholder + " /N " + pageCount + " /T " + placeholder + " >>\nendobj\n");
+        int firstXrefOffset = out.size();
+        write(out, "xref\n0 " + firstPageSectionSize + "\n0000000000 65535 f \n");
+        int firstXrefEntries = out.size();
+        for (int object = 1; object < firstPageSectionSize; object++) {
+            write(out, placeholder + " 00000 n \n");
+        }
+        write(out, "trailer\n<< /Size " + objectCount + " /Root 2 0 R" + id + " /Prev " + placeholder
+                + " >>\nstartxref\n0\n%%EOF\n");
+        offsets[2] = out.size();
+        write(out, "2 0 obj\n<< /Type /Catalog /Pages 3 0 R >>\nendobj\n");
+        offsets[3] = out.size();
+        write(out, "3 0 obj\n<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>\nendobj\n");
+        // no shared object hint table, pdfium checks the pages without hints
+        offsets[4] = out.size();
+        write(out, "4 0 obj\n<< /Length 16 /S 0 >>\nstream\n\0\0\0\0\0\0\0\0\0\0\0\0\0\0\0\0\nendstream\nendobj\n");
+        int hintStreamEnd = out.size();
+        int firstPageEnd = 0;
+        for (int page = 0; page < pageCount; page++) {
+            int object = 5 + 2 * page;
+            offsets[object] = out.size();
+            write(out, object + " 0 obj\n<< /Type /Page /Parent 3 0 R /MediaBox [0 0 612 792] /Contents "
+                    + (object + 1) + " 0 R >>\nendobj\n");
+            offsets[object + 1] = out.size();
+            write(out, (object + 1) + " 0 obj\n<< /Length " + pageContent.length() + " >>\nstream\n"
+                    + pageContent + "\nendstream\nendobj\n");
+            if (page == 0) {
+                firstPageEnd = out.size();
+            }
+        }
+
+        int mainXrefOffset = out.size();
+        write(out, "xref\n0 1\n");
+        int mainXrefFirstEntry = out.size() - 1;
+        write(out, "0000000000 65535 f \n" + firstPageSectionSize + " " + (objectCount - firstPageSectionSize) + "\n");
+        for (int object = firstPageSectionSize; object < objectCount; object++) {
+            write(out, format(offsets[object]) + " 00000 n \n");
+        }
+        write(out, "trailer\n<< /Size " + objectCount + id + " >>\nstartxref\n" + firstXrefOffset + "\n%%EOF\n");
+
+        byte[] document = out.toByteArray();
+        String header = new String(document, 0, offsets[2], StandardCharsets.ISO_8859_1)
+                .replaceFirst("/L " + placeholder, "/L " + format(document.length))
+                .replaceFirst("/H \\[" + placeholder + " " + placeholder,
+                        "/H [" + format(offsets[4]) + " " + format(hintStreamEnd - offsets[4]))
+                .replaceFirst("/E " + placeholder, "/E " + format(firstPageEnd))
+                .replaceFirst("/T " + placeholder, "/T " + format(mainXrefFirstEntry))
+                .replaceFirst("/Prev " + placeholder, "/Prev " + format(mainXrefOffset));
+        byte[] headerBytes = header.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(headerBytes, 0, document, 0, headerBytes.length);
+        for (int object = 1; object < firstPageSectionSize; object++) {
+            byte[] offset = format(offsets[object]).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(offset, 0, document, firstXrefEntries + 20 * (object - 1), offset.length);
+        }
+        return document;
+    }
+
+    /**
+     * @return integer value of the key in the linearization dictionary
+     * @throws IllegalArgumentException if the document has no such key
+     */
+    public static int linearizedHeaderValue(byte[] document, String key) {
+        String header = new String(document, 0, 256, StandardCharsets.US_ASCII);
+        Matcher matcher = Pattern.compile("/" + key + " (\\d+)").matcher(header);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("No " + key + " in the linearization dictionary");
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static String format(int offset) {
+        return String.format(Locale.ROOT, "%010d", offset);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes, 0, bytes.length);
+    }
+}